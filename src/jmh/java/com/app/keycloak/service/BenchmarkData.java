@@ -0,0 +1,67 @@
+package com.app.keycloak.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.app.keycloak.entity.Product;
+
+// Deterministic test data shaped like production rows and Keycloak responses
+final class BenchmarkData {
+
+	private static final String[] WORDS = { "shoes", "shirt", "watch", "wallet", "phone", "laptop", "charger",
+			"cable", "bottle", "jacket", "denim", "cotton", "leather", "steel", "wireless", "bluetooth", "gaming",
+			"kitchen", "garden", "office", "travel", "sports", "running", "classic", "premium", "organic", "kids",
+			"women", "men", "smart", "portable", "digital" };
+
+	private static final String[] CATEGORIES = { "electronics", "fashion", "home", "sports", "books", "toys",
+			"beauty", "grocery" };
+
+	private BenchmarkData() {
+	}
+
+	static List<Product> products(int count) {
+		Random random = new Random(42);
+		List<Product> products = new ArrayList<>(count);
+		for (int i = 1; i <= count; i++) {
+			Product product = new Product();
+			product.setProductid(i);
+			product.setProductname(word(random) + " " + word(random) + " item" + random.nextInt(50_000));
+			product.setPrice(1 + random.nextInt(10_000));
+			product.setQuantity(random.nextInt(200));
+			product.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+			product.setSearchkeyword(word(random) + " " + word(random) + " " + word(random));
+			product.setVersion((long) random.nextInt(5));
+			products.add(product);
+		}
+		return products;
+	}
+
+	// A GET /admin/realms/{realm}/users response body with every field Keycloak sends
+	static byte[] usersJson(int count) {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"id\":\"5f0e8a4c-1b7e-4c5d-9a3e-").append(String.format("%012d", i)).append('"')
+					.append(",\"createdTimestamp\":").append(1_700_000_000_000L + i)
+					.append(",\"username\":\"user").append(i).append('"')
+					.append(",\"enabled\":true,\"totp\":false,\"emailVerified\":true")
+					.append(",\"firstName\":\"First").append(i).append('"')
+					.append(",\"lastName\":\"Last").append(i).append('"')
+					.append(",\"email\":\"user").append(i).append("@example.com\"")
+					.append(",\"attributes\":{\"city\":[\"City").append(i % 100).append("\"],\"phno\":[\"9")
+					.append(String.format("%09d", i)).append("\"]}")
+					.append(",\"disableableCredentialTypes\":[],\"requiredActions\":[],\"notBefore\":0")
+					.append(",\"access\":{\"manageGroupMembership\":true,\"view\":true,\"mapRoles\":true,")
+					.append("\"impersonate\":false,\"manage\":true}}");
+		}
+		return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	static String word(Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+}
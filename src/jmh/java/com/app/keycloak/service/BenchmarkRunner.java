@@ -0,0 +1,31 @@
+package com.app.keycloak.service;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks and writes the results as JSON, so runs from
+ * different releases can be compared. Started by {@code mvn -Pjmh verify};
+ * the arguments are the result file and an optional benchmark name regex.
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		String result = args.length > 0 ? args[0] : "target/jmh-result.json";
+		String include = args.length > 1 ? args[1] : "com\\.app\\.keycloak\\..*Benchmark";
+		Options options = new OptionsBuilder()
+				.include(include)
+				// Adds allocation per operation to every result, not only time
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(result)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,98 @@
+package com.app.keycloak.service;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.entity.ProductLookup;
+import com.app.keycloak.exceptions.CustomException;
+import com.app.keycloak.repository.ProductRepository;
+
+/**
+ * The in-process part of {@link ProductService#getProductsByIds}: de-duplicating
+ * the IDs, the cache multi-get, chunking the misses and putting the results
+ * back in request order. The repository answers from memory, so database time
+ * is left out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductLookupBenchmark {
+
+	private static final int CATALOG = 100_000;
+
+	@Param({ "10", "100", "1000" })
+	private int ids;
+
+	@Param({ "true", "false" })
+	private boolean cached;
+
+	private ProductService service;
+	private List<Long> request;
+
+	@Setup
+	public void setUp() throws CustomException {
+		Product[] catalog = BenchmarkData.products(CATALOG).toArray(new Product[0]);
+		ProductRepository repository = (ProductRepository) Proxy.newProxyInstance(
+				ProductRepository.class.getClassLoader(), new Class<?>[] { ProductRepository.class },
+				(proxy, method, args) -> {
+					if (!method.getName().equals("findAllById")) {
+						throw new UnsupportedOperationException(method.getName());
+					}
+					List<Product> found = new ArrayList<>();
+					for (Object id : (Iterable<?>) args[0]) {
+						long productId = (Long) id;
+						if (productId >= 1 && productId <= CATALOG) {
+							found.add(catalog[(int) productId - 1]);
+						}
+					}
+					return found;
+				});
+
+		ProductCache cache = new ProductCache();
+		ReflectionTestUtils.setField(cache, "enabled", cached);
+		ReflectionTestUtils.setField(cache, "maxSize", (long) CATALOG);
+		ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+		ReflectionTestUtils.setField(cache, "warmupSize", 0);
+		cache.init();
+
+		service = new ProductService();
+		ReflectionTestUtils.setField(service, "productRepository", repository);
+		ReflectionTestUtils.setField(service, "productCache", cache);
+		ReflectionTestUtils.setField(service, "batchChunkSize", 500);
+		ReflectionTestUtils.setField(service, "maxBatchIds", 1000);
+
+		// A few unknown IDs and a repeat, as real clients send
+		Random random = new Random(7);
+		request = new ArrayList<>(ids);
+		for (int i = 0; i < ids; i++) {
+			request.add(i % 50 == 49 ? CATALOG + i : 1L + random.nextInt(CATALOG));
+		}
+		request.add(request.get(0));
+		service.getProductsByIds(request);
+	}
+
+	@Benchmark
+	public ProductLookup getProductsByIds() throws CustomException {
+		return service.getProductsByIds(request);
+	}
+}
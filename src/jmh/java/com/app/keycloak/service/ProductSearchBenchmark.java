@@ -0,0 +1,103 @@
+package com.app.keycloak.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.app.keycloak.entity.Product;
+
+/**
+ * Keyword search through the in-memory index against the table scan MySQL
+ * would run for the same search, {@code productname LIKE %term% OR
+ * searchkeyword LIKE %term%} for every query term under a case-insensitive
+ * collation, up to a million-row catalog (about 300 MB of heap for the
+ * catalog and its index). Setup checks that both find the same products.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ProductSearchBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	private int products;
+
+	@Param({ "wallet", "port", "smart watch", "zzz" })
+	private String query;
+
+	private List<Product> catalog;
+	private ProductSearchIndex index;
+	private List<String> terms;
+
+	@Setup
+	public void setUp() {
+		catalog = BenchmarkData.products(products);
+		index = new ProductSearchIndex();
+		index.rebuild(catalog);
+		terms = ProductSearchIndex.tokenize(query);
+
+		Set<Long> indexed = ids(index());
+		Set<Long> scanned = ids(likeScan());
+		if (!indexed.equals(scanned)) {
+			throw new IllegalStateException("Index found " + indexed.size() + " products for '" + query
+					+ "' but the scan found " + scanned.size());
+		}
+	}
+
+	@Benchmark
+	public List<Product> index() {
+		return index.search(query);
+	}
+
+	@Benchmark
+	public List<Product> likeScan() {
+		List<Product> matches = new ArrayList<>();
+		for (Product product : catalog) {
+			if (matchesEveryTerm(product)) {
+				matches.add(product);
+			}
+		}
+		return matches;
+	}
+
+	// Terms are runs of letters and digits, so a match within the text is a match within one of its tokens
+	private boolean matchesEveryTerm(Product product) {
+		String name = lowerCase(product.getProductname());
+		String keywords = lowerCase(product.getSearchkeyword());
+		for (String term : terms) {
+			if (!name.contains(term) && !keywords.contains(term)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String lowerCase(String text) {
+		return text == null ? "" : text.toLowerCase(Locale.ROOT);
+	}
+
+	private static Set<Long> ids(List<Product> products) {
+		Set<Long> ids = new HashSet<>();
+		for (Product product : products) {
+			ids.add(product.getProductid());
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,68 @@
+package com.app.keycloak.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.entity.ProductPage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Writing product lists as JSON with the mapper Spring MVC configures, at
+ * page and full-listing sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductSerializationBenchmark {
+
+	@Param({ "50", "500", "5000" })
+	private int products;
+
+	private ObjectMapper mapper;
+	private ObjectWriter listWriter;
+	private List<Product> list;
+	private ProductPage page;
+
+	@Setup
+	public void setUp() {
+		mapper = Jackson2ObjectMapperBuilder.json().build();
+		list = BenchmarkData.products(products);
+		listWriter = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, Product.class));
+		page = new ProductPage(list, ProductService.encodeCursor(products));
+	}
+
+	// What a controller returning the list does
+	@Benchmark
+	public byte[] productList() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(list);
+	}
+
+	@Benchmark
+	public byte[] productListSharedWriter() throws JsonProcessingException {
+		return listWriter.writeValueAsBytes(list);
+	}
+
+	@Benchmark
+	public byte[] productPage() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(page);
+	}
+}
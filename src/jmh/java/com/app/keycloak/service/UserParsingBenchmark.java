@@ -0,0 +1,109 @@
+package com.app.keycloak.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.app.keycloak.entity.UserDto;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+/**
+ * Decoding a Keycloak user search response into {@link UserDto}s: the
+ * streaming {@link KeycloakCodec}, the tree model it replaced, and typed
+ * databind into a representation class. The runner's GC profiler reports the
+ * bytes allocated per call as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserParsingBenchmark {
+
+	@Param({ "1", "100", "1000" })
+	private int users;
+
+	private String body;
+	private ObjectMapper mapper;
+	private ObjectReader typedReader;
+
+	@Setup
+	public void setUp() {
+		body = new String(BenchmarkData.usersJson(users), StandardCharsets.UTF_8);
+		mapper = new ObjectMapper();
+		typedReader = mapper.readerForListOf(UserRepresentation.class);
+	}
+
+	@Benchmark
+	public List<UserDto> treeModel() throws IOException {
+		ArrayNode jsonArray = (ArrayNode) mapper.readTree(body);
+		List<UserDto> result = new ArrayList<>(jsonArray.size());
+		for (JsonNode userObj : jsonArray) {
+			result.add(treeToUserDto(userObj));
+		}
+		return result;
+	}
+
+	@Benchmark
+	public List<UserDto> typedDatabind() throws IOException {
+		List<UserRepresentation> representations = typedReader.readValue(body);
+		List<UserDto> result = new ArrayList<>(representations.size());
+		for (UserRepresentation user : representations) {
+			result.add(new UserDto(user.username, user.firstName, user.lastName, user.email,
+					first(user.attributes, "phno"), first(user.attributes, "city")));
+		}
+		return result;
+	}
+
+	@Benchmark
+	public List<UserDto> codec() throws IOException {
+		List<KeycloakUser> found = KeycloakCodec.readUsers(body);
+		List<UserDto> result = new ArrayList<>(found.size());
+		for (KeycloakUser user : found) {
+			result.add(user.toUserDto());
+		}
+		return result;
+	}
+
+	// The mapping the clients used before KeycloakCodec
+	static UserDto treeToUserDto(JsonNode userObj) {
+		JsonNode attributes = userObj.path("attributes");
+		return new UserDto(userObj.path("username").asText(null), userObj.path("firstName").asText(null),
+				userObj.path("lastName").asText(null), userObj.path("email").asText(null),
+				attributes.path("phno").path(0).asText(null), attributes.path("city").path(0).asText(null));
+	}
+
+	private static String first(Map<String, List<String>> attributes, String name) {
+		List<String> values = attributes == null ? null : attributes.get(name);
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class UserRepresentation {
+		public String username;
+		public String firstName;
+		public String lastName;
+		public String email;
+		public Map<String, List<String>> attributes;
+	}
+}
@@ -0,0 +1,237 @@
+package com.app.keycloak;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.app.keycloak.LoadDriver.Result;
+import com.app.keycloak.stub.KeycloakStub;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Drives the /easybuy endpoints end to end, with the in-process Keycloak stub
+ * and an in-memory database, and reports p50/p99/throughput per endpoint.
+ * <p>
+ * Each endpoint is loaded on its own after a warm-up. The stall scenario then
+ * makes Keycloak answer far slower than the client timeouts while the user
+ * endpoints keep being called, and loads the catalog endpoints at the same
+ * time; their latency must stay close to the baseline.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+class EasybuyLoadTest {
+
+	private static final Logger logger = LogManager.getLogger(EasybuyLoadTest.class);
+
+	private static final String REALM = "easybuy";
+	private static final String CLIENT_ID = "easybuy";
+	private static final int USERS = 200;
+	private static final int PRODUCTS = 5000;
+	private static final int CATEGORIES = 20;
+	private static final Set<Integer> OK = Set.of(200);
+
+	private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 16);
+	private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("loadtest.durationSeconds", 5));
+	private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("loadtest.warmupSeconds", 2));
+	private static final Path REPORT = Path.of(System.getProperty("loadtest.report", "target/loadtest-report.json"));
+
+	private static KeycloakStub stub;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final HttpClient http = HttpClient.newHttpClient();
+
+	@LocalServerPort
+	private int port;
+
+	private String adminToken;
+	private List<Long> productIds;
+
+	@DynamicPropertySource
+	static void keycloak(DynamicPropertyRegistry registry) throws Exception {
+		stub = KeycloakStub.start(REALM, CLIENT_ID);
+		stub.addUser("loadadmin", "loadadmin-password", "admin");
+		for (int i = 0; i < USERS; i++) {
+			stub.addUser("user" + i, "password" + i);
+		}
+		registry.add("baseUrl", stub::baseUrl);
+		registry.add("realm", () -> REALM);
+		registry.add("clientId", () -> CLIENT_ID);
+		registry.add("clientSecret", () -> KeycloakStub.CLIENT_SECRET);
+		registry.add("keycloak.auth.issuer", stub::issuer);
+	}
+
+	@AfterAll
+	static void stopKeycloak() {
+		stub.close();
+	}
+
+	@Test
+	void endpointsUnderLoad() throws Exception {
+		adminToken = login("loadadmin", "loadadmin-password");
+		seedProducts();
+
+		Map<String, Function<Random, HttpRequest>> catalog = new LinkedHashMap<>();
+		catalog.put("user/getproducts", random -> get("/easybuy/user/getproducts?size=50"));
+		catalog.put("user/filterproducts", random -> get("/easybuy/user/filterproducts?category=category"
+				+ random.nextInt(CATEGORIES) + "&sort=price_asc&size=20"));
+		catalog.put("user/searchproducts",
+				random -> get("/easybuy/user/searchproducts?searchkeyword=keyword" + random.nextInt(100)));
+		catalog.put("user/facets", random -> get("/easybuy/user/facets"));
+		catalog.put("user/{id}", random -> get("/easybuy/user/" + productIds.get(random.nextInt(productIds.size()))));
+
+		Map<String, Function<Random, HttpRequest>> users = new LinkedHashMap<>();
+		users.put("admin/getuser", random -> get("/easybuy/admin/getuser?username=user" + random.nextInt(USERS)));
+		users.put("admin/getusers", random -> get("/easybuy/admin/getusers?page=" + random.nextInt(4) + "&size=50"));
+		users.put("admin/loginvalidation", random -> {
+			int user = random.nextInt(USERS);
+			return HttpRequest.newBuilder(uri("/easybuy/admin/loginvalidation?username=user" + user
+					+ "&password=password" + user)).POST(HttpRequest.BodyPublishers.noBody()).build();
+		});
+
+		List<Result> results = new ArrayList<>();
+		Map<String, Long> keycloakRequests;
+		try (LoadDriver driver = new LoadDriver(CONCURRENCY)) {
+			for (Map.Entry<String, Function<Random, HttpRequest>> endpoint : catalog.entrySet()) {
+				results.add(measure(driver, endpoint.getKey(), endpoint.getValue(), OK));
+			}
+			// getuser answers 302 Found on success
+			for (Map.Entry<String, Function<Random, HttpRequest>> endpoint : users.entrySet()) {
+				results.add(measure(driver, endpoint.getKey(), endpoint.getValue(),
+						endpoint.getKey().equals("admin/getuser") ? Set.of(302) : OK));
+			}
+
+			// Keycloak stops answering in time; user lookups fail fast or serve stale results
+			stub.setLatency(Duration.ofSeconds(10));
+			try (LoadDriver keycloakLoad = new LoadDriver(CONCURRENCY)) {
+				CompletableFuture<Result> stalledUsers = CompletableFuture.supplyAsync(() -> {
+					try {
+						return keycloakLoad.run("stall: admin/getuser", WARMUP.plus(DURATION.multipliedBy(2)),
+								random -> get("/easybuy/admin/getuser?username=user" + random.nextInt(USERS * 2)),
+								Set.of(302, 503));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException(e);
+					}
+				});
+				driver.run("warmup", WARMUP, catalog.get("user/getproducts"), OK);
+				results.add(driver.run("stall: user/getproducts", DURATION, catalog.get("user/getproducts"), OK));
+				results.add(driver.run("stall: user/{id}", DURATION, catalog.get("user/{id}"), OK));
+				results.add(stalledUsers.join());
+			} finally {
+				keycloakRequests = stub.requestCounts();
+				stub.reset();
+			}
+		}
+
+		report(results, keycloakRequests);
+
+		for (Result result : results) {
+			assertEquals(0, result.errors(), result.name() + " had errors");
+			assertTrue(result.requests() > 0, result.name() + " sent no requests");
+		}
+		Result baseline = find(results, "user/getproducts");
+		Result stalled = find(results, "stall: user/getproducts");
+		assertTrue(stalled.p99Ms() <= Math.max(3 * baseline.p99Ms(), baseline.p99Ms() + 100),
+				"Catalog p99 went from " + baseline.p99Ms() + " ms to " + stalled.p99Ms() + " ms during the stall");
+		// Guarded calls give up after their timeout instead of waiting for Keycloak's 10 seconds
+		assertTrue(find(results, "stall: admin/getuser").maxMs() < 5000);
+	}
+
+	private Result measure(LoadDriver driver, String name, Function<Random, HttpRequest> requests,
+			Set<Integer> expected) throws InterruptedException {
+		driver.run(name, WARMUP, requests, expected);
+		return driver.run(name, DURATION, requests, expected);
+	}
+
+	private void report(List<Result> results, Map<String, Long> keycloakRequests) throws IOException {
+		StringBuilder table = new StringBuilder("\n").append(Result.header()).append('\n');
+		results.forEach(result -> table.append(result).append('\n'));
+		table.append("Keycloak requests: ").append(keycloakRequests).append('\n');
+		logger.info("Load test results:{}", table);
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("concurrency", CONCURRENCY);
+		report.put("durationSeconds", DURATION.toSeconds());
+		report.put("results", results);
+		report.put("keycloakRequests", keycloakRequests);
+		Files.createDirectories(REPORT.toAbsolutePath().getParent());
+		mapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(REPORT.toFile(), report);
+	}
+
+	private static Result find(List<Result> results, String name) {
+		return results.stream().filter(result -> result.name().equals(name)).findFirst().orElseThrow();
+	}
+
+	private String login(String username, String password) throws Exception {
+		HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri(
+				"/easybuy/admin/loginvalidation?username=" + username + "&password=" + password))
+				.POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, response.statusCode(), response.body());
+		return mapper.readTree(response.body()).path("accessToken").asText();
+	}
+
+	// Imports the catalog through the bulk endpoint, then collects the generated IDs
+	private void seedProducts() throws Exception {
+		StringBuilder ndjson = new StringBuilder();
+		Random random = new Random(7);
+		for (int i = 0; i < PRODUCTS; i++) {
+			Map<String, Object> product = new LinkedHashMap<>();
+			product.put("productname", "Product " + i);
+			product.put("price", 1 + random.nextInt(1000));
+			product.put("quantity", random.nextInt(100));
+			product.put("category", "category" + (i % CATEGORIES));
+			product.put("searchkeyword", "keyword" + (i % 100) + " item" + i);
+			ndjson.append(mapper.writeValueAsString(product)).append('\n');
+		}
+		HttpResponse<String> imported = http.send(HttpRequest.newBuilder(uri("/easybuy/admin/addproduct/bulk"))
+				.header("Authorization", "Bearer " + adminToken)
+				.header("Content-Type", "application/x-ndjson")
+				.POST(HttpRequest.BodyPublishers.ofString(ndjson.toString())).build(),
+				HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, imported.statusCode(), imported.body());
+
+		productIds = new ArrayList<>();
+		HttpResponse<String> page = http.send(get("/easybuy/user/getproducts?size=500"),
+				HttpResponse.BodyHandlers.ofString());
+		for (JsonNode product : mapper.readTree(page.body()).path("items")) {
+			productIds.add(product.path("productid").asLong());
+		}
+		assertEquals(500, productIds.size(), page.body());
+	}
+
+	private HttpRequest get(String path) {
+		return HttpRequest.newBuilder(uri(path)).header("Authorization", "Bearer " + adminToken).GET().build();
+	}
+
+	private URI uri(String path) {
+		return URI.create("http://localhost:" + port + path);
+	}
+}
@@ -0,0 +1,146 @@
+package com.app.keycloak;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Closed-loop load generator: a fixed number of workers each send one request,
+ * wait for the response and send the next until the time is up. Every
+ * response time is kept, so percentiles are exact rather than estimated, and
+ * each worker draws its requests from its own seeded random so a run sends
+ * the same mix every time.
+ */
+final class LoadDriver implements AutoCloseable {
+
+	private final HttpClient client;
+	private final ExecutorService workers;
+	private final int concurrency;
+
+	LoadDriver(int concurrency) {
+		this.concurrency = concurrency;
+		this.workers = Executors.newCachedThreadPool();
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(5))
+				.build();
+	}
+
+	// Sends requests for the given time; a response counts as an error unless its status is expected
+	Result run(String name, Duration duration, Function<Random, HttpRequest> requests, Set<Integer> expected)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + duration.toNanos();
+		List<Future<Worker>> running = new ArrayList<>(concurrency);
+		for (int i = 0; i < concurrency; i++) {
+			Worker worker = new Worker(new Random(name.hashCode() * 31L + i));
+			running.add(workers.submit(() -> worker.run(deadline, requests, expected)));
+		}
+
+		long start = System.nanoTime();
+		List<Worker> finished = new ArrayList<>(concurrency);
+		for (Future<Worker> worker : running) {
+			try {
+				finished.add(worker.get());
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Load worker failed for " + name, e.getCause());
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		int total = 0;
+		long errors = 0;
+		for (Worker worker : finished) {
+			total += worker.count;
+			errors += worker.errors;
+		}
+		long[] latencies = new long[total];
+		int offset = 0;
+		for (Worker worker : finished) {
+			System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+			offset += worker.count;
+		}
+		Arrays.sort(latencies);
+		return new Result(name, total, errors, total / seconds, millis(percentile(latencies, 50)),
+				millis(percentile(latencies, 99)), millis(total == 0 ? 0 : latencies[total - 1]));
+	}
+
+	@Override
+	public void close() {
+		workers.shutdownNow();
+	}
+
+	// Nearest-rank percentile of sorted values
+	static long percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	private final class Worker {
+
+		private final Random random;
+		private long[] latencies = new long[1024];
+		private int count;
+		private long errors;
+
+		Worker(Random random) {
+			this.random = random;
+		}
+
+		Worker run(long deadline, Function<Random, HttpRequest> requests, Set<Integer> expected)
+				throws InterruptedException {
+			while (System.nanoTime() < deadline) {
+				HttpRequest request = requests.apply(random);
+				long start = System.nanoTime();
+				boolean ok;
+				try {
+					ok = expected.contains(client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+				} catch (IOException e) {
+					ok = false;
+				}
+				if (count == latencies.length) {
+					latencies = Arrays.copyOf(latencies, count * 2);
+				}
+				latencies[count++] = System.nanoTime() - start;
+				if (!ok) {
+					errors++;
+				}
+			}
+			return this;
+		}
+	}
+
+	record Result(String name, int requests, long errors, double throughput, double p50Ms, double p99Ms,
+			double maxMs) {
+
+		static String header() {
+			return String.format(Locale.ROOT, "%-28s %9s %7s %10s %9s %9s %9s", "scenario", "requests", "errors",
+					"req/s", "p50 ms", "p99 ms", "max ms");
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%-28s %9d %7d %10.1f %9.2f %9.2f %9.2f", name, requests, errors,
+					throughput, p50Ms, p99Ms, maxMs);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.app.keycloak.config;
+
+import java.time.Duration;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * HTTP clients shared by every call to the Keycloak server. Connections are
+ * pooled and kept alive so repeated admin calls do not pay for a new TCP/TLS
+ * handshake each time.
+ */
+@Configuration
+public class KeycloakClientConfig {
+
+	@Value("${keycloak.http.maxConnections:50}")
+	private int maxConnections;
+
+	@Value("${keycloak.http.maxConnectionsPerRoute:20}")
+	private int maxConnectionsPerRoute;
+
+	@Value("${keycloak.http.connectTimeoutMs:2000}")
+	private long connectTimeoutMs;
+
+	@Value("${keycloak.http.readTimeoutMs:5000}")
+	private long readTimeoutMs;
+
+	@Value("${keycloak.http.connectionRequestTimeoutMs:1000}")
+	private long connectionRequestTimeoutMs;
+
+	@Value("${keycloak.http.keepAliveSeconds:30}")
+	private long keepAliveSeconds;
+
+	@Bean
+	public PoolingHttpClientConnectionManager keycloakConnectionManager() {
+		ConnectionConfig connectionConfig = ConnectionConfig.custom()
+				.setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+				.setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+				.build();
+		return PoolingHttpClientConnectionManagerBuilder.create()
+				.setMaxConnTotal(maxConnections)
+				.setMaxConnPerRoute(maxConnectionsPerRoute)
+				.setDefaultConnectionConfig(connectionConfig)
+				.build();
+	}
+
+	@Bean
+	public CloseableHttpClient keycloakHttpClient(PoolingHttpClientConnectionManager keycloakConnectionManager) {
+		// Used when the server does not send a Keep-Alive header of its own
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMs))
+				.setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+				.setConnectionKeepAlive(TimeValue.ofSeconds(keepAliveSeconds))
+				.build();
+		return HttpClients.custom()
+				.setConnectionManager(keycloakConnectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.evictExpiredConnections()
+				.evictIdleConnections(TimeValue.ofSeconds(keepAliveSeconds))
+				.build();
+	}
+
+	@Bean
+	public RestTemplate keycloakRestTemplate(CloseableHttpClient keycloakHttpClient) {
+		return new RestTemplate(new HttpComponentsClientHttpRequestFactory(keycloakHttpClient));
+	}
+
+	// Non-blocking client for keycloak.client.mode=reactive, with the same pool limits and timeouts
+	@Bean
+	@ConditionalOnProperty(name = "keycloak.client.mode", havingValue = "reactive")
+	public WebClient keycloakWebClient(WebClient.Builder builder) {
+		ConnectionProvider connectionProvider = ConnectionProvider.builder("keycloak")
+				.maxConnections(maxConnections)
+				.pendingAcquireTimeout(Duration.ofMillis(connectionRequestTimeoutMs))
+				.maxIdleTime(Duration.ofSeconds(keepAliveSeconds))
+				.build();
+		HttpClient httpClient = HttpClient.create(connectionProvider)
+				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeoutMs)
+				.responseTimeout(Duration.ofMillis(readTimeoutMs));
+		return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+	}
+}
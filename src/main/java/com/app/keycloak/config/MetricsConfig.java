@@ -0,0 +1,114 @@
+package com.app.keycloak.config;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.app.keycloak.repository.ProductRepository;
+import com.app.keycloak.service.MetricsRegistry;
+import com.app.keycloak.service.ProductCache;
+import com.app.keycloak.service.UserCache;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Registers the metrics that are read from other components: database and
+ * Keycloak connection pools, the caches, and a timer around every
+ * {@link ProductRepository} method.
+ */
+@Configuration
+public class MetricsConfig {
+
+	private final MetricsRegistry metrics;
+	private final DataSource dataSource;
+	private final PoolingHttpClientConnectionManager keycloakConnectionManager;
+	private final ProductCache productCache;
+	private final UserCache userCache;
+
+	public MetricsConfig(MetricsRegistry metrics, DataSource dataSource,
+			PoolingHttpClientConnectionManager keycloakConnectionManager, ProductCache productCache,
+			UserCache userCache) {
+		this.metrics = metrics;
+		this.dataSource = dataSource;
+		this.keycloakConnectionManager = keycloakConnectionManager;
+		this.productCache = productCache;
+		this.userCache = userCache;
+	}
+
+	// Static so it is registered before the repositories it wraps are created
+	@Bean
+	public static BeanPostProcessor repositoryMetrics(ObjectProvider<MetricsRegistry> metrics) {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (!(bean instanceof ProductRepository)) {
+					return bean;
+				}
+				ProxyFactory proxy = new ProxyFactory(bean);
+				proxy.addAdvice((MethodInterceptor) invocation -> {
+					long start = System.nanoTime();
+					String state = "ERROR";
+					try {
+						Object result = invocation.proceed();
+						state = "SUCCESS";
+						return result;
+					} finally {
+						// A Stream result is timed until it is returned, not until it is consumed
+						metrics.getObject().record("spring_data_repository_invocations", System.nanoTime() - start,
+								"repository", "ProductRepository", "method", invocation.getMethod().getName(),
+								"state", state);
+					}
+				});
+				return proxy.getProxy();
+			}
+		};
+	}
+
+	@PostConstruct
+	void registerGauges() {
+		if (dataSource instanceof HikariDataSource hikari) {
+			String pool = String.valueOf(hikari.getPoolName());
+			Supplier<HikariPoolMXBean> mxBean = hikari::getHikariPoolMXBean;
+			metrics.gauge("hikaricp_connections_active", () -> mxBean.get().getActiveConnections(), "pool", pool);
+			metrics.gauge("hikaricp_connections_idle", () -> mxBean.get().getIdleConnections(), "pool", pool);
+			metrics.gauge("hikaricp_connections", () -> mxBean.get().getTotalConnections(), "pool", pool);
+			metrics.gauge("hikaricp_connections_pending", () -> mxBean.get().getThreadsAwaitingConnection(), "pool",
+					pool);
+			metrics.gauge("hikaricp_connections_max", hikari::getMaximumPoolSize, "pool", pool);
+		}
+
+		metrics.gauge("httpcomponents_httpclient_pool_total_connections",
+				() -> keycloakConnectionManager.getTotalStats().getLeased(), "httpclient", "keycloak", "state", "leased");
+		metrics.gauge("httpcomponents_httpclient_pool_total_connections",
+				() -> keycloakConnectionManager.getTotalStats().getAvailable(), "httpclient", "keycloak", "state",
+				"available");
+		metrics.gauge("httpcomponents_httpclient_pool_total_pending",
+				() -> keycloakConnectionManager.getTotalStats().getPending(), "httpclient", "keycloak");
+		metrics.gauge("httpcomponents_httpclient_pool_total_max",
+				() -> keycloakConnectionManager.getTotalStats().getMax(), "httpclient", "keycloak");
+
+		registerCache("products", productCache::stats);
+		registerCache("keycloakUsers", userCache::stats);
+	}
+
+	// Disabled caches report no size or counts, so their series are left out
+	private void registerCache(String name, Supplier<Map<String, Object>> stats) {
+		metrics.gauge("cache_size", () -> (Number) stats.get().get("size"), "cache", name);
+		metrics.functionCounter("cache_gets", () -> (Number) stats.get().get("hitCount"), "cache", name, "result",
+				"hit");
+		metrics.functionCounter("cache_gets", () -> (Number) stats.get().get("missCount"), "cache", name, "result",
+				"miss");
+		metrics.functionCounter("cache_evictions", () -> (Number) stats.get().get("evictionCount"), "cache", name);
+	}
+}
@@ -0,0 +1,42 @@
+package com.app.keycloak.config;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Gives the streaming routes it is registered for their own async timeout. A
+ * full catalog export or user stream can run for many minutes, while every
+ * other async request keeps {@code spring.mvc.async.request-timeout}. The
+ * timeout is applied when the {@code StreamingResponseBody} starts writing.
+ */
+@Component
+public class StreamTimeoutInterceptor implements HandlerInterceptor, CallableProcessingInterceptor {
+
+	private static final String KEY = StreamTimeoutInterceptor.class.getName();
+
+	@Value("${streaming.timeoutMs:1800000}")
+	private long timeoutMs;
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(KEY, this);
+		return true;
+	}
+
+	@Override
+	public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+		if (request instanceof AsyncWebRequest asyncRequest) {
+			asyncRequest.setTimeout(timeoutMs);
+		}
+	}
+}
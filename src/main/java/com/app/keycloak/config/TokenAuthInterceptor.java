@@ -0,0 +1,109 @@
+package com.app.keycloak.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.app.keycloak.exceptions.ErrorResponse;
+import com.app.keycloak.exceptions.InvalidTokenException;
+import com.app.keycloak.exceptions.KeycloakException;
+import com.app.keycloak.service.JwtVerifier;
+import com.app.keycloak.service.JwtVerifier.VerifiedToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Authorizes requests from the bearer token alone, without a call to
+ * Keycloak. Any valid token may use the user routes; admin routes, registered
+ * through {@link #requiringAdminRole()}, also need the configured realm role.
+ * Which routes are admin routes is decided by the interceptor registration, so
+ * it matches the path exactly as the handler mapping does, decoded and without
+ * matrix parameters. The verified token is left on the request under
+ * {@link #TOKEN_ATTRIBUTE}.
+ */
+@Component
+public class TokenAuthInterceptor implements HandlerInterceptor {
+
+	private static final Logger logger = LogManager.getLogger(TokenAuthInterceptor.class);
+
+	public static final String TOKEN_ATTRIBUTE = TokenAuthInterceptor.class.getName() + ".token";
+
+	private static final String BEARER_PREFIX = "Bearer ";
+
+	@Value("${keycloak.auth.enabled:true}")
+	private boolean enabled;
+
+	@Value("${keycloak.auth.adminRole:admin}")
+	private String adminRole;
+
+	@Autowired
+	private JwtVerifier jwtVerifier;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private final HandlerInterceptor adminInterceptor = new HandlerInterceptor() {
+		@Override
+		public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+				throws Exception {
+			return authorize(request, response, true);
+		}
+	};
+
+	// The same checks plus the admin role, for registration on the admin routes
+	public HandlerInterceptor requiringAdminRole() {
+		return adminInterceptor;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+			throws Exception {
+		return authorize(request, response, false);
+	}
+
+	private boolean authorize(HttpServletRequest request, HttpServletResponse response, boolean adminOnly)
+			throws Exception {
+		if (!enabled) {
+			return true;
+		}
+
+		String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+		if (authorization == null || !authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+			return reject(response, HttpStatus.UNAUTHORIZED, "Missing bearer token");
+		}
+
+		try {
+			VerifiedToken token = jwtVerifier.verify(authorization.substring(BEARER_PREFIX.length()).trim());
+			if (adminOnly && !token.hasRole(adminRole)) {
+				logger.warn("User {} is not allowed to call {}", token.username(), request.getRequestURI());
+				return reject(response, HttpStatus.FORBIDDEN, "The " + adminRole + " role is required");
+			}
+			request.setAttribute(TOKEN_ATTRIBUTE, token);
+			return true;
+		} catch (InvalidTokenException e) {
+			logger.warn("Rejected bearer token: {}", e.getMessage());
+			return reject(response, HttpStatus.UNAUTHORIZED, e.getMessage());
+		} catch (KeycloakException e) {
+			logger.error("Unable to verify bearer token: {}", e.getMessage());
+			return reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Unable to load the realm signing keys");
+		}
+	}
+
+	private boolean reject(HttpServletResponse response, HttpStatus status, String message) throws Exception {
+		response.setStatus(status.value());
+		if (status == HttpStatus.UNAUTHORIZED) {
+			response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+		}
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(status.getReasonPhrase(), message));
+		return false;
+	}
+}
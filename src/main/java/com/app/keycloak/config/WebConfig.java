@@ -0,0 +1,27 @@
+package com.app.keycloak.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+	@Autowired
+	private TokenAuthInterceptor tokenAuthInterceptor;
+
+	@Autowired
+	private StreamTimeoutInterceptor streamTimeoutInterceptor;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(tokenAuthInterceptor).addPathPatterns("/easybuy/user/**");
+		// Login and refresh are how clients obtain a token, so they cannot require one
+		registry.addInterceptor(tokenAuthInterceptor.requiringAdminRole())
+				.addPathPatterns("/easybuy/admin/**")
+				.excludePathPatterns("/easybuy/admin/loginvalidation", "/easybuy/admin/refreshtoken");
+		registry.addInterceptor(streamTimeoutInterceptor)
+				.addPathPatterns("/easybuy/admin/exportproducts", "/easybuy/admin/getusers/stream");
+	}
+}
@@ -0,0 +1,22 @@
+package com.app.keycloak.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.app.keycloak.service.MetricsRegistry;
+
+// Scrape target for Prometheus, at the path Actuator would use
+@RestController
+public class MetricsController {
+
+	private static final String PROMETHEUS_TEXT = "text/plain;version=0.0.4;charset=utf-8";
+
+	@Autowired
+	private MetricsRegistry metrics;
+
+	@GetMapping(value = "/actuator/prometheus", produces = PROMETHEUS_TEXT)
+	public String prometheus() {
+		return metrics.scrape();
+	}
+}
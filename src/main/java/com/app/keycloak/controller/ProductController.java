@@ -1,27 +1,44 @@
 package com.app.keycloak.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.app.keycloak.entity.Product;
+import com.app.keycloak.entity.ProductFilter;
+import com.app.keycloak.entity.ProductImportReport;
+import com.app.keycloak.entity.ProductLookup;
+import com.app.keycloak.entity.ProductPage;
+import com.app.keycloak.entity.ProductPatch;
 import com.app.keycloak.exceptions.CustomException;
+import com.app.keycloak.exceptions.InsufficientStockException;
+import com.app.keycloak.exceptions.ProductNotFoundException;
+import com.app.keycloak.exceptions.VersionConflictException;
+import com.app.keycloak.service.InventoryService;
+import com.app.keycloak.service.ProductExportService;
+import com.app.keycloak.service.ProductImportService;
 import com.app.keycloak.service.ProductService;
 
 @RestController
@@ -33,6 +50,15 @@ public class ProductController {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private ProductExportService productExportService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
     @PostMapping("/admin/addproduct")
     public ResponseEntity<?> addProduct(@RequestBody Product product) {
         logger.info("Attempting to add product: {}", product);
@@ -48,14 +74,84 @@ public class ProductController {
         }
     }
 
+    // Imports a CSV (with a header row) or NDJSON stream of products in JDBC batches
+    @PostMapping(value = "/admin/addproduct/bulk", consumes = { "text/csv", MediaType.APPLICATION_NDJSON_VALUE })
+    public ResponseEntity<?> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+        try {
+            boolean csv = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType("text/csv"));
+            ProductImportReport report = productImportService.importProducts(body, csv);
+            return ResponseEntity.ok(report);
+        } catch (IOException e) {
+            logger.error("Error reading product import: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    // Streams the whole catalog as CSV or NDJSON without loading it into memory
+    @GetMapping("/admin/exportproducts")
+    public ResponseEntity<?> exportProducts(@RequestParam(name = "format", defaultValue = "csv") String format,
+            @RequestParam(name = "gzip", defaultValue = "false") boolean gzip) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("format must be csv or ndjson");
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try {
+                productExportService.export(outputStream, csv, gzip);
+            } catch (RuntimeException e) {
+                // Headers are already committed, so the client only sees a truncated stream
+                logger.error("Error exporting products: {}", e.getMessage(), e);
+                throw e;
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=products." + (csv ? "csv" : "ndjson"));
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/user/getproducts")
-    public ResponseEntity<?> getProducts() {
+    public ResponseEntity<?> getProducts(@RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "category", required = false) String category,
+            @RequestParam(name = "minPrice", required = false) Integer minPrice,
+            @RequestParam(name = "maxPrice", required = false) Integer maxPrice) {
         try {
-            List<Product> products = productService.getProducts();
-            return ResponseEntity.ok(products);
+            ProductPage page = productService.getProducts(cursor, size, category, minPrice, maxPrice);
+            return ResponseEntity.ok(page);
+        } catch (CustomException e) {
+            logger.error("Error fetching products: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/user/filterproducts")
+    public ResponseEntity<?> filterProducts(@RequestParam(name = "category", required = false) String category,
+            @RequestParam(name = "minPrice", required = false) Integer minPrice,
+            @RequestParam(name = "maxPrice", required = false) Integer maxPrice,
+            @RequestParam(name = "inStock", defaultValue = "false") boolean inStock,
+            @RequestParam(name = "sort", required = false) String sort,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", required = false) Integer size) {
+        try {
+            ProductFilter filter = new ProductFilter();
+            filter.setCategory(category);
+            filter.setMinPrice(minPrice);
+            filter.setMaxPrice(maxPrice);
+            filter.setInStock(inStock);
+            filter.setSort(ProductFilter.Sort.parse(sort));
+            return ResponseEntity.ok(productService.filterProducts(filter, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Sort must be one of id, price_asc, price_desc");
         } catch (CustomException e) {
-            logger.error("Error fetching products: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to fetch products");
+            logger.error("Error filtering products: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
     }
 
@@ -74,38 +170,101 @@ public class ProductController {
         }
     }
 
+    // Counts and price range per category for filter sidebars
+    @GetMapping("/user/facets")
+    public ResponseEntity<?> getFacets() {
+        return ResponseEntity.ok(productService.getFacets());
+    }
+
     @PutMapping("/admin/updateproduct/{id}")
     public ResponseEntity<?> updateProduct(@PathVariable Long id, @RequestBody Product updatedProduct) {
         logger.info("Updating product with ID: {}", id);
         try {
-            Product existingProduct = productService.getProductById(id);
-            if (existingProduct == null) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Product not found");
-            }
             productService.updateProduct(updatedProduct, id);
             return ResponseEntity.ok("Product updated successfully");
         } catch (CustomException e) {
-            logger.error("Error updating product: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to update product");
+            return updateFailed(e);
         }
     }
 
+    @PatchMapping("/admin/updateproduct/{id}")
+    public ResponseEntity<?> patchProduct(@PathVariable Long id, @RequestBody ProductPatch patch) {
+        logger.info("Patching product with ID: {}", id);
+        try {
+            productService.patchProduct(patch, id);
+            return ResponseEntity.ok("Product updated successfully");
+        } catch (CustomException e) {
+            return updateFailed(e);
+        }
+    }
+
+    private ResponseEntity<?> updateFailed(CustomException e) {
+        logger.error("Error updating product: {}", e.getMessage());
+        if (e instanceof ProductNotFoundException) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+        if (e instanceof VersionConflictException) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
     @DeleteMapping("/admin/deleteproduct/{id}")
     public ResponseEntity<?> deleteProduct(@PathVariable Long id) {
         logger.info("Deleting product with ID: {}", id);
         try {
-            Product existingProduct = productService.getProductById(id);
-            if (existingProduct == null) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Product not found");
-            }
-            productService.deleteProduct(existingProduct);
+            productService.deleteProduct(id);
             return ResponseEntity.ok("Product deleted successfully");
+        } catch (ProductNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
         } catch (CustomException e) {
             logger.error("Error deleting product: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to delete product");
         }
     }
 
+    @PostMapping("/user/inventory/{id}/reserve")
+    public ResponseEntity<?> reserveStock(@PathVariable Long id, @RequestParam("quantity") int quantity) {
+        try {
+            inventoryService.reserve(id, quantity);
+            return ResponseEntity.ok("Stock reserved");
+        } catch (CustomException e) {
+            return stockFailed(e);
+        }
+    }
+
+    // Admin only until reservations are tracked per order; otherwise any user could add stock
+    @PostMapping("/admin/inventory/{id}/release")
+    public ResponseEntity<?> releaseStock(@PathVariable Long id, @RequestParam("quantity") int quantity) {
+        try {
+            inventoryService.release(id, quantity);
+            return ResponseEntity.ok("Stock released");
+        } catch (CustomException e) {
+            return stockFailed(e);
+        }
+    }
+
+    @GetMapping("/admin/inventory/stats")
+    public ResponseEntity<?> getInventoryStats() {
+        return ResponseEntity.ok(inventoryService.stats());
+    }
+
+    private ResponseEntity<?> stockFailed(CustomException e) {
+        logger.error("Error changing stock: {}", e.getMessage());
+        if (e instanceof ProductNotFoundException) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+        if (e instanceof InsufficientStockException) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+    }
+
+    @GetMapping("/admin/productcache/stats")
+    public ResponseEntity<?> getProductCacheStats() {
+        return ResponseEntity.ok(productService.getCacheStats());
+    }
+
     @GetMapping("/user/{id}")
     public ResponseEntity<?> findById(@PathVariable Long id) {
         logger.info("Finding product by ID: {}", id);
@@ -123,20 +282,13 @@ public class ProductController {
 
     @GetMapping("/user/productlist")
     public ResponseEntity<?> findAllByIds(@RequestParam("ids") List<Long> productIds) {
-        logger.info("Fetching products by IDs: {}", productIds);
+        logger.info("Fetching {} products by IDs", productIds.size());
         try {
-            List<Product> products = productIds.stream().map(id -> {
-                try {
-                    return productService.getProductById(id);
-                } catch (CustomException e) {
-                    logger.error("Error fetching product by ID: {}", id, e);
-                    return null;
-                }
-            }).filter(product -> product != null).collect(Collectors.toList());
-            return ResponseEntity.ok(products);
-        } catch (Exception e) {
-            logger.error("Error fetching products by IDs: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to fetch products");
+            ProductLookup lookup = productService.getProductsByIds(productIds);
+            return ResponseEntity.ok(lookup);
+        } catch (CustomException e) {
+            logger.error("Error fetching products by IDs: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
     }
 }
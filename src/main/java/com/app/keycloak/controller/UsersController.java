@@ -1,25 +1,44 @@
 package com.app.keycloak.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.app.keycloak.entity.BulkUserReport;
 import com.app.keycloak.entity.UserDto;
 import com.app.keycloak.exceptions.ErrorResponse;
 import com.app.keycloak.exceptions.KeycloakException;
+import com.app.keycloak.service.BulkUserService;
+import com.app.keycloak.service.KeycloakGuard;
+import com.app.keycloak.service.UserCache;
+import com.app.keycloak.service.UserClient;
 import com.app.keycloak.service.UsersService;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import reactor.core.publisher.Mono;
 
 @Controller
 @RequestMapping("/easybuy/")
@@ -28,100 +47,200 @@ public class UsersController {
 
 	private static final Logger logger = LogManager.getLogger(UsersController.class);
 
+	private static final int MAX_PAGE_SIZE = 500;
+
 	@Autowired
 	UsersService usersService;
 
+	@Autowired
+	UserClient userClient;
+
+	@Autowired
+	UserCache userCache;
+
+	@Autowired
+	BulkUserService bulkUserService;
+
 	@PostMapping("/admin/adduser")
-	public ResponseEntity<Object> addUser(@RequestBody UserDto user) {
+	public Mono<ResponseEntity<Object>> addUser(@RequestBody UserDto user) {
 
-		try {
+		return userClient.addUser(user).map(result -> {
 
-			try {
-				usersService.addUser(user);
-			} catch (JsonProcessingException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
 			logger.info("User added Successfully");
 
-			return new ResponseEntity<>(user, HttpStatus.CREATED);
+			return new ResponseEntity<Object>(user, HttpStatus.CREATED);
 
-		} catch (KeycloakException e) {
+		}).onErrorResume(e -> e instanceof KeycloakException || e instanceof JsonProcessingException, e -> {
 
 			logger.error("Getting error when adding the user");
 
-			return new ResponseEntity<>(new ErrorResponse("Error while adding user", e.getMessage()),
-					HttpStatus.INTERNAL_SERVER_ERROR);
+			return Mono.just(new ResponseEntity<>(new ErrorResponse("Error while adding user", e.getMessage()),
+					errorStatus(e, HttpStatus.INTERNAL_SERVER_ERROR)));
 
-		}
+		});
+
+	}
 
+	// Accepts a JSON array or NDJSON stream of users and creates them with bounded parallelism
+	@PostMapping(value = "/admin/adduser/bulk", consumes = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_NDJSON_VALUE })
+	public ResponseEntity<Object> addUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+			InputStream body) {
+		try {
+			boolean ndjson = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+			BulkUserReport report = bulkUserService.addUsers(body, ndjson);
+			logger.info("Bulk user request processed");
+			return new ResponseEntity<>(report, HttpStatus.OK);
+		} catch (IOException e) {
+			logger.error("Getting error when reading the bulk user request");
+			return new ResponseEntity<>(new ErrorResponse("Error while adding users", e.getMessage()),
+					HttpStatus.BAD_REQUEST);
+		}
 	}
 
 	@GetMapping("/admin/getusers")
-	public ResponseEntity<Object> getUser() {
-		List<UserDto> userDto;
+	public Mono<ResponseEntity<Object>> getUser(@RequestParam(name = "page", defaultValue = "0") int page,
+			@RequestParam(name = "size", defaultValue = "100") int size) {
+
+		// Computed as a long: a large page would otherwise wrap to a negative offset
+		long first = (long) page * size;
+		if (page < 0 || size < 1 || size > MAX_PAGE_SIZE || first > Integer.MAX_VALUE) {
+			return Mono.just(new ResponseEntity<>(new ErrorResponse("Invalid paging parameters",
+					"page must be >= 0, size between 1 and " + MAX_PAGE_SIZE + " and page * size at most "
+							+ Integer.MAX_VALUE), HttpStatus.BAD_REQUEST));
+		}
 
-		try {
+		return userClient.getUsers((int) first, size).collectList().map(userDto -> {
 
-			userDto = usersService.getUsers();
 			logger.info("Users info fetched from keycloak server");
 
-			return new ResponseEntity<>(userDto, HttpStatus.OK);
+			return new ResponseEntity<Object>(userDto, HttpStatus.OK);
 
-		} catch (KeycloakException e) {
+		}).onErrorResume(KeycloakException.class, e -> {
 
 			logger.error("Getting error when fetching the user details");
 
-			return new ResponseEntity<>(new ErrorResponse("Error fetching users", e.getMessage()),
-					HttpStatus.INTERNAL_SERVER_ERROR);
+			return Mono.just(new ResponseEntity<>(new ErrorResponse("Error fetching users", e.getMessage()),
+					errorStatus(e, HttpStatus.INTERNAL_SERVER_ERROR)));
 
-		}
+		});
+
+	}
+
+	// Streams every user in the realm as newline-delimited JSON, one Keycloak page at a time
+	@GetMapping("/admin/getusers/stream")
+	public ResponseEntity<StreamingResponseBody> streamUsers() {
+		// Keep the response open and let the servlet buffer decide when to flush
+		ObjectWriter writer = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+				.writerFor(UserDto.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+				.withRootValueSeparator("\n");
+
+		StreamingResponseBody body = outputStream -> {
+			try (SequenceWriter sequence = writer.writeValues(outputStream)) {
+				usersService.forEachUser(user -> {
+					try {
+						sequence.write(user);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				logger.info("Users streamed from keycloak server");
+			} catch (KeycloakException e) {
+				// Headers are already committed, so the client only sees a truncated stream
+				logger.error("Getting error when streaming the user details: {}", e.getMessage());
+				throw e;
+			}
+		};
 
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
 	}
 
 	@GetMapping("/admin/getuser")
-	public ResponseEntity<Object> getUserInfo(@RequestParam("username") String username) {
+	public Mono<ResponseEntity<Object>> getUserInfo(@RequestParam("username") String username) {
 
-		Object userDto = null;
-		try {
-			userDto = usersService.getUserInfo(username);
+		return userClient.getUserInfo(username).map(userDto -> {
 			logger.info("User info fetched from keycloak successfully");
-			return new ResponseEntity<>(userDto, HttpStatus.FOUND);
-		} catch (KeycloakException e) {
+			return new ResponseEntity<Object>(userDto, HttpStatus.FOUND);
+		}).onErrorResume(KeycloakException.class, e -> {
 			logger.error("Getting error while fetching the user info");
-			return new ResponseEntity<>(new ErrorResponse("Error while fetching the user info", e.getMessage()),
-					HttpStatus.NOT_FOUND);
-		}
+			return Mono.just(new ResponseEntity<>(
+					new ErrorResponse("Error while fetching the user info", e.getMessage()),
+					errorStatus(e, HttpStatus.NOT_FOUND)));
+		});
 
 	}
 
+	@GetMapping("/admin/usercache/stats")
+	public ResponseEntity<Object> getUserCacheStats() {
+		return new ResponseEntity<>(userCache.stats(), HttpStatus.OK);
+	}
+
+	@GetMapping("/admin/coalescing/stats")
+	public ResponseEntity<Object> getCoalescingStats() {
+		return new ResponseEntity<>(userClient.getCoalescingStats(), HttpStatus.OK);
+	}
+
 	@PostMapping("/admin/loginvalidation")
-	public ResponseEntity<Object> loginValidation(@RequestParam("username") String username,
+	public Mono<ResponseEntity<Object>> loginValidation(@RequestParam("username") String username,
 			@RequestParam("password") String password) {
-		try {
-			String accessToken = usersService.loginValidation(username,password);
+		return userClient.loginValidation(username, password).map(tokens -> {
 			logger.info("Generated the token for the user");
-			return new ResponseEntity<>("Please find the token:  " + accessToken, HttpStatus.OK);
-		} catch (KeycloakException e) {
+			return new ResponseEntity<Object>(tokens, HttpStatus.OK);
+		}).onErrorResume(KeycloakException.class, e -> {
 			logger.error("Getting error while fetching the user info");
-			return new ResponseEntity<>(new ErrorResponse("Error while fetching the user info", e.getMessage()),
-					HttpStatus.UNAUTHORIZED);
-		}
+			return Mono.just(new ResponseEntity<>(
+					new ErrorResponse("Error while fetching the user info", e.getMessage()),
+					errorStatus(e, HttpStatus.UNAUTHORIZED)));
+		});
+
+	}
+
+	@PostMapping("/admin/refreshtoken")
+	public Mono<ResponseEntity<Object>> refreshToken(@RequestParam("refresh_token") String refreshToken) {
+		return userClient.refreshToken(refreshToken).map(tokens -> {
+			logger.info("Refreshed the token for the user");
+			return new ResponseEntity<Object>(tokens, HttpStatus.OK);
+		}).onErrorResume(KeycloakException.class, e -> {
+			logger.error("Getting error while refreshing the token");
+			return Mono.just(new ResponseEntity<>(
+					new ErrorResponse("Error while refreshing the token", e.getMessage()),
+					errorStatus(e, HttpStatus.UNAUTHORIZED)));
+		});
 
 	}
 
 	@DeleteMapping("/admin/delete/user")
-	public ResponseEntity<Object> deletUser(@RequestParam("username") String username) {
+	public Mono<ResponseEntity<Object>> deletUser(@RequestParam("username") String username) {
+
+		return userClient.deleteUser(username)
+				.map(deleted -> new ResponseEntity<Object>(HttpStatus.NO_CONTENT))
+				.onErrorResume(KeycloakException.class, e -> {
+					logger.error("Getting error when deleting the user");
+					return Mono.just(new ResponseEntity<>(
+							new ErrorResponse("Error when deleting the user", e.getMessage()),
+							errorStatus(e, HttpStatus.NOT_FOUND)));
+				});
+
+	}
+
+	@PostMapping("/admin/delete/users")
+	public ResponseEntity<Object> deleteUsers(@RequestBody List<String> usernames) {
 
 		try {
-			usersService.deleteUser(username);
-			return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-		} catch (KeycloakException e) {
-			logger.error("Getting error when deleting the user");
-			return new ResponseEntity<>(new ErrorResponse("Error when deleting the user", e.getMessage()),
-					HttpStatus.NOT_FOUND);
+			BulkUserReport report = bulkUserService.deleteUsers(usernames);
+			logger.info("Bulk delete request processed");
+			return new ResponseEntity<>(report, HttpStatus.OK);
+		} catch (IOException e) {
+			logger.error("Getting error when deleting the users");
+			return new ResponseEntity<>(new ErrorResponse("Error when deleting the users", e.getMessage()),
+					HttpStatus.INTERNAL_SERVER_ERROR);
 		}
 
 	}
 
+	// Keycloak being down or too slow is not the caller's fault, so it is reported as such
+	private static HttpStatus errorStatus(Throwable e, HttpStatus status) {
+		return KeycloakGuard.isOutage(e) ? HttpStatus.SERVICE_UNAVAILABLE : status;
+	}
+
 }
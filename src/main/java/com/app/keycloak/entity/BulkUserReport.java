@@ -0,0 +1,33 @@
+package com.app.keycloak.entity;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public class BulkUserReport {
+
+	private int total;
+	private Map<BulkUserResult.Status, Integer> summary;
+	private List<BulkUserResult> results;
+
+	public BulkUserReport(List<BulkUserResult> results) {
+		super();
+		this.total = results.size();
+		this.results = results;
+		this.summary = new EnumMap<>(BulkUserResult.Status.class);
+		for (BulkUserResult result : results) {
+			summary.merge(result.getStatus(), 1, Integer::sum);
+		}
+	}
+
+	public int getTotal() {
+		return total;
+	}
+	public Map<BulkUserResult.Status, Integer> getSummary() {
+		return summary;
+	}
+	public List<BulkUserResult> getResults() {
+		return results;
+	}
+
+}
@@ -0,0 +1,47 @@
+package com.app.keycloak.entity;
+
+public class BulkUserResult {
+
+	public enum Status {
+		CREATED, DELETED, CONFLICT, NOT_FOUND, FAILED
+	}
+
+	private int index;
+	private String username;
+	private Status status;
+	private String message;
+
+	public BulkUserResult(int index, String username, Status status, String message) {
+		super();
+		this.index = index;
+		this.username = username;
+		this.status = status;
+		this.message = message;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+	public void setIndex(int index) {
+		this.index = index;
+	}
+	public String getUsername() {
+		return username;
+	}
+	public void setUsername(String username) {
+		this.username = username;
+	}
+	public Status getStatus() {
+		return status;
+	}
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+	public String getMessage() {
+		return message;
+	}
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+}
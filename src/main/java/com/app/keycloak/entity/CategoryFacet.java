@@ -0,0 +1,37 @@
+package com.app.keycloak.entity;
+
+public class CategoryFacet {
+
+	private String category;
+	private long count;
+	private int minPrice;
+	private int maxPrice;
+	private double avgPrice;
+
+	// Boxed so a JPQL constructor expression over COUNT/MIN/MAX/AVG can build it too
+	public CategoryFacet(String category, Long count, Integer minPrice, Integer maxPrice, Double avgPrice) {
+		super();
+		this.category = category;
+		this.count = count;
+		this.minPrice = minPrice;
+		this.maxPrice = maxPrice;
+		this.avgPrice = avgPrice;
+	}
+
+	public String getCategory() {
+		return category;
+	}
+	public long getCount() {
+		return count;
+	}
+	public int getMinPrice() {
+		return minPrice;
+	}
+	public int getMaxPrice() {
+		return maxPrice;
+	}
+	public double getAvgPrice() {
+		return avgPrice;
+	}
+
+}
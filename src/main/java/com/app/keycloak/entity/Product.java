@@ -5,14 +5,29 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 @Entity
-@Table(name = "product")
+@Table(name = "product", indexes = {
+		@Index(name = Product.CATEGORY_PRICE_INDEX, columnList = "category, price"),
+		@Index(name = Product.PRICE_INDEX, columnList = "price") })
 public class Product {
 
+	// Serve the filter API: equality on category then a price range or price order, and price alone.
+	// InnoDB appends the primary key to each entry, so ties are already in ID order.
+	public static final String CATEGORY_PRICE_INDEX = "idx_product_category_price";
+	public static final String PRICE_INDEX = "idx_product_price";
+
+	// IDs handed out per trip to the sequence table; must not change once IDs have been allocated
+	public static final int ID_ALLOCATION_SIZE = 50;
+
+	// A pooled sequence (a table on MySQL) instead of IDENTITY, so Hibernate can batch inserts
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+	@SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = ID_ALLOCATION_SIZE)
 	private long productid;
 
 	@Column(nullable = false, length = 45)
@@ -30,6 +45,11 @@ public class Product {
 	@Column(nullable = false, length = 45)
 	private String searchkeyword;
 
+	// Bumped by every update; a client that sends it back only updates the version it read
+	@Version
+	@Column(nullable = false)
+	private Long version;
+
 	public long getProductid() {
 		return productid;
 	}
@@ -78,10 +98,18 @@ public class Product {
 		this.searchkeyword = searchkeyword;
 	}
 
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 	@Override
 	public String toString() {
 		return "Product [productid=" + productid + ", productname=" + productname + ", price=" + price + ", quantity=" + quantity + ", category="
-				+ category + ", searchkeyword=" + searchkeyword + "]";
+				+ category + ", searchkeyword=" + searchkeyword + ", version=" + version + "]";
 	}
 
 }
@@ -0,0 +1,59 @@
+package com.app.keycloak.entity;
+
+import java.util.Locale;
+
+/**
+ * Criteria for the product filter endpoint. Null fields do not filter.
+ */
+public class ProductFilter {
+
+	public enum Sort {
+		ID, PRICE_ASC, PRICE_DESC;
+
+		// Accepts the request form, e.g. "price_asc"; null means ID order
+		public static Sort parse(String value) {
+			if (value == null || value.isBlank()) {
+				return ID;
+			}
+			return valueOf(value.trim().toUpperCase(Locale.ROOT));
+		}
+	}
+
+	private String category;
+	private Integer minPrice;
+	private Integer maxPrice;
+	private boolean inStock;
+	private Sort sort = Sort.ID;
+
+	public String getCategory() {
+		return category;
+	}
+	public void setCategory(String category) {
+		this.category = category;
+	}
+	public Integer getMinPrice() {
+		return minPrice;
+	}
+	public void setMinPrice(Integer minPrice) {
+		this.minPrice = minPrice;
+	}
+	public Integer getMaxPrice() {
+		return maxPrice;
+	}
+	public void setMaxPrice(Integer maxPrice) {
+		this.maxPrice = maxPrice;
+	}
+	public boolean isInStock() {
+		return inStock;
+	}
+	public void setInStock(boolean inStock) {
+		this.inStock = inStock;
+	}
+	public Sort getSort() {
+		return sort;
+	}
+	public void setSort(Sort sort) {
+		this.sort = sort;
+	}
+
+}
@@ -0,0 +1,22 @@
+package com.app.keycloak.entity;
+
+public class ProductImportError {
+
+	private long row;
+	private String message;
+
+	public ProductImportError(long row, String message) {
+		super();
+		this.row = row;
+		this.message = message;
+	}
+
+	// 1-based position of the record in the upload, not counting a CSV header
+	public long getRow() {
+		return row;
+	}
+	public String getMessage() {
+		return message;
+	}
+
+}
@@ -0,0 +1,39 @@
+package com.app.keycloak.entity;
+
+import java.util.List;
+
+public class ProductImportReport {
+
+	private long total;
+	private long imported;
+	private long failed;
+	private boolean errorsTruncated;
+	private List<ProductImportError> errors;
+
+	public ProductImportReport(long total, long imported, List<ProductImportError> errors, boolean errorsTruncated) {
+		super();
+		this.total = total;
+		this.imported = imported;
+		this.failed = total - imported;
+		this.errors = errors;
+		this.errorsTruncated = errorsTruncated;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+	public long getImported() {
+		return imported;
+	}
+	public long getFailed() {
+		return failed;
+	}
+	// True when more rows failed than are listed in errors
+	public boolean isErrorsTruncated() {
+		return errorsTruncated;
+	}
+	public List<ProductImportError> getErrors() {
+		return errors;
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.app.keycloak.entity;
+
+import java.util.List;
+
+public class ProductLookup {
+
+	private List<Product> products;
+	private List<Long> missingIds;
+
+	public ProductLookup(List<Product> products, List<Long> missingIds) {
+		super();
+		this.products = products;
+		this.missingIds = missingIds;
+	}
+
+	// In the order the IDs were requested
+	public List<Product> getProducts() {
+		return products;
+	}
+	public List<Long> getMissingIds() {
+		return missingIds;
+	}
+
+}
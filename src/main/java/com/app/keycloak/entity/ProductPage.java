@@ -0,0 +1,29 @@
+package com.app.keycloak.entity;
+
+import java.util.List;
+
+public class ProductPage {
+
+	private List<Product> items;
+	private int size;
+	private String nextCursor;
+
+	public ProductPage(List<Product> items, String nextCursor) {
+		super();
+		this.items = items;
+		this.size = items.size();
+		this.nextCursor = nextCursor;
+	}
+
+	public List<Product> getItems() {
+		return items;
+	}
+	public int getSize() {
+		return size;
+	}
+	// Null on the last page
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+}
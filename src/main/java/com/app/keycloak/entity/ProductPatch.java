@@ -0,0 +1,53 @@
+package com.app.keycloak.entity;
+
+/**
+ * Partial product update. Fields left null keep their current value; a
+ * non-null version makes the update conditional on it.
+ */
+public class ProductPatch {
+
+	private Long version;
+	private String productname;
+	private Integer price;
+	private Integer quantity;
+	private String category;
+	private String searchkeyword;
+
+	public Long getVersion() {
+		return version;
+	}
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+	public String getProductname() {
+		return productname;
+	}
+	public void setProductname(String productname) {
+		this.productname = productname;
+	}
+	public Integer getPrice() {
+		return price;
+	}
+	public void setPrice(Integer price) {
+		this.price = price;
+	}
+	public Integer getQuantity() {
+		return quantity;
+	}
+	public void setQuantity(Integer quantity) {
+		this.quantity = quantity;
+	}
+	public String getCategory() {
+		return category;
+	}
+	public void setCategory(String category) {
+		this.category = category;
+	}
+	public String getSearchkeyword() {
+		return searchkeyword;
+	}
+	public void setSearchkeyword(String searchkeyword) {
+		this.searchkeyword = searchkeyword;
+	}
+
+}
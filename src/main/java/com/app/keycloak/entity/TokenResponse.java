@@ -0,0 +1,52 @@
+package com.app.keycloak.entity;
+
+public class TokenResponse {
+
+	private String accessToken;
+	private long expiresIn;
+	private String refreshToken;
+	private long refreshExpiresIn;
+	private String tokenType;
+
+	public TokenResponse(String accessToken, long expiresIn, String refreshToken, long refreshExpiresIn,
+			String tokenType) {
+		super();
+		this.accessToken = accessToken;
+		this.expiresIn = expiresIn;
+		this.refreshToken = refreshToken;
+		this.refreshExpiresIn = refreshExpiresIn;
+		this.tokenType = tokenType;
+	}
+
+	public String getAccessToken() {
+		return accessToken;
+	}
+	public void setAccessToken(String accessToken) {
+		this.accessToken = accessToken;
+	}
+	public long getExpiresIn() {
+		return expiresIn;
+	}
+	public void setExpiresIn(long expiresIn) {
+		this.expiresIn = expiresIn;
+	}
+	public String getRefreshToken() {
+		return refreshToken;
+	}
+	public void setRefreshToken(String refreshToken) {
+		this.refreshToken = refreshToken;
+	}
+	public long getRefreshExpiresIn() {
+		return refreshExpiresIn;
+	}
+	public void setRefreshExpiresIn(long refreshExpiresIn) {
+		this.refreshExpiresIn = refreshExpiresIn;
+	}
+	public String getTokenType() {
+		return tokenType;
+	}
+	public void setTokenType(String tokenType) {
+		this.tokenType = tokenType;
+	}
+
+}
@@ -0,0 +1,8 @@
+package com.app.keycloak.exceptions;
+
+public class InsufficientStockException extends CustomException {
+
+	public InsufficientStockException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,12 @@
+package com.app.keycloak.exceptions;
+
+public class InvalidTokenException extends RuntimeException {
+
+	public InvalidTokenException(String message) {
+		super(message);
+	}
+
+	public InvalidTokenException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
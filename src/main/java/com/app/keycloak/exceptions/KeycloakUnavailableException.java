@@ -0,0 +1,13 @@
+package com.app.keycloak.exceptions;
+
+// Thrown without reaching Keycloak, or after giving up on it: circuit open, bulkhead full or timed out
+public class KeycloakUnavailableException extends KeycloakException {
+
+	public KeycloakUnavailableException(String message) {
+		super(message);
+	}
+
+	public KeycloakUnavailableException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,8 @@
+package com.app.keycloak.exceptions;
+
+public class ProductNotFoundException extends CustomException {
+
+	public ProductNotFoundException(String message) {
+		super(message);
+	}
+}
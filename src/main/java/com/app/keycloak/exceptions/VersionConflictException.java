@@ -0,0 +1,8 @@
+package com.app.keycloak.exceptions;
+
+public class VersionConflictException extends CustomException {
+
+	public VersionConflictException(String message) {
+		super(message);
+	}
+}
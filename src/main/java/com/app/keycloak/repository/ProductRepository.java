@@ -1,18 +1,26 @@
 package com.app.keycloak.repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import com.app.keycloak.entity.CategoryFacet;
 import com.app.keycloak.entity.Product;
 
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
 
 	// List findBy(String Category, String category);
 
@@ -21,13 +29,46 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 	@Query("SELECT p FROM Product p WHERE p.searchkeyword LIKE %?1%")
 	public List<Product> searchProduct(String searchkeyword);
 
-	@Query("SELECT p FROM Product p WHERE p.productid=:id")
-	public Product getProductDetails(Object id);
+	// Keyset page: seeks past the last ID seen on the primary key instead of counting an OFFSET.
+	// Filtered pages go through ProductSpecifications, so no (:param IS NULL OR ...) branch hides an index
+	@Query("SELECT p FROM Product p WHERE p.productid > :afterId ORDER BY p.productid")
+	public List<Product> findPageAfter(long afterId, Limit limit);
+
+	// Per-category aggregates, used when the in-memory facets are disabled
+	@Query("SELECT new com.app.keycloak.entity.CategoryFacet(p.category, COUNT(p), MIN(p.price), MAX(p.price), AVG(p.price))"
+			+ " FROM Product p WHERE p.category IS NOT NULL GROUP BY p.category ORDER BY p.category")
+	public List<CategoryFacet> findCategoryFacets();
+
+	// Atomic stock change: a negative delta only applies if enough stock is left; returns the rows updated
+	@Modifying
+	@Transactional
+	@Query("UPDATE Product p SET p.quantity = p.quantity + :delta, p.version = p.version + 1"
+			+ " WHERE p.productid = :id AND p.quantity + :delta >= 0")
+	public int adjustQuantity(Long id, int delta);
+
+	// Streams the whole table. A fetch size of Integer.MIN_VALUE makes MySQL Connector/J hand over rows
+	// one at a time instead of buffering the result set; must be consumed inside a transaction
+	@QueryHints({ @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+			@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+			@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false") })
+	@Query("SELECT p FROM Product p ORDER BY p.productid")
+	public Stream<Product> streamAll();
+
+	// Null fields keep their value and a null version skips the version check; returns the rows updated
+	@Modifying
+	@Transactional
+	@Query("UPDATE Product p SET p.productname = COALESCE(:productname, p.productname),"
+			+ " p.price = COALESCE(:price, p.price), p.quantity = COALESCE(:quantity, p.quantity),"
+			+ " p.category = COALESCE(:category, p.category), p.searchkeyword = COALESCE(:searchkeyword, p.searchkeyword),"
+			+ " p.version = p.version + 1"
+			+ " WHERE p.productid = :id AND (:version IS NULL OR p.version = :version)")
+	public int updateProduct(Long id, Long version, String productname, Integer price, Integer quantity,
+			String category, String searchkeyword);
 
+	// Deletes without loading the row first; returns the rows deleted
 	@Modifying
 	@Transactional
-	@Query("UPDATE Product p SET p.productname = :productname, p.quantity = :quantity, p.price = :price, p.category = :category, p.searchkeyword = :searchkeyword WHERE p.id = :id")
-	public void updateProduct(String productname, int price, int quantity, String category, String searchkeyword,
-			Long id);
+	@Query("DELETE FROM Product p WHERE p.productid = :id")
+	public int deleteProductById(Long id);
 
 }
\ No newline at end of file
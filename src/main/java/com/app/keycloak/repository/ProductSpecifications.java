@@ -0,0 +1,57 @@
+package com.app.keycloak.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.entity.ProductFilter;
+
+/**
+ * Builds the filter query from only the criteria that are set, so MySQL sees
+ * plain equality and range predicates it can match to
+ * {@link Product#CATEGORY_PRICE_INDEX} instead of {@code (? IS NULL OR ...)}
+ * branches.
+ */
+public final class ProductSpecifications {
+
+	private ProductSpecifications() {
+	}
+
+	public static Specification<Product> matching(ProductFilter filter) {
+		Specification<Product> spec = Specification.where(null);
+		if (filter.getCategory() != null) {
+			spec = spec.and((root, query, cb) -> cb.equal(root.get("category"), filter.getCategory()));
+		}
+		if (filter.getMinPrice() != null) {
+			spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("price"), filter.getMinPrice()));
+		}
+		if (filter.getMaxPrice() != null) {
+			spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("price"), filter.getMaxPrice()));
+		}
+		if (filter.isInStock()) {
+			// Checked on the rows the index range returns; stock changes too often to index
+			spec = spec.and((root, query, cb) -> cb.greaterThan(root.get("quantity"), 0));
+		}
+		return spec;
+	}
+
+	// Seeks past the last row of the previous page in the given sort order
+	public static Specification<Product> after(ProductFilter.Sort sort, int lastPrice, long lastId) {
+		return switch (sort) {
+		case ID -> (root, query, cb) -> cb.greaterThan(root.get("productid"), lastId);
+		case PRICE_ASC -> (root, query, cb) -> cb.or(cb.greaterThan(root.get("price"), lastPrice),
+				cb.and(cb.equal(root.get("price"), lastPrice), cb.greaterThan(root.get("productid"), lastId)));
+		case PRICE_DESC -> (root, query, cb) -> cb.or(cb.lessThan(root.get("price"), lastPrice),
+				cb.and(cb.equal(root.get("price"), lastPrice), cb.lessThan(root.get("productid"), lastId)));
+		};
+	}
+
+	// Always ends on the ID so the order, and with it the keyset, is total
+	public static Sort order(ProductFilter.Sort sort) {
+		return switch (sort) {
+		case ID -> Sort.by("productid");
+		case PRICE_ASC -> Sort.by("price", "productid");
+		case PRICE_DESC -> Sort.by(Sort.Direction.DESC, "price", "productid");
+		};
+	}
+}
@@ -0,0 +1,262 @@
+package com.app.keycloak.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+
+import com.app.keycloak.entity.TokenResponse;
+import com.app.keycloak.exceptions.KeycloakException;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Holds the admin access token used for the Keycloak admin REST calls.
+ * <p>
+ * The token is cached until it expires (taken from {@code expires_in}, or the
+ * JWT {@code exp} claim as a fallback). Once a token enters its refresh window
+ * a replacement is fetched in the background while callers keep using the
+ * current one. Only one token request is ever in flight; concurrent callers
+ * that need a token wait on that same request.
+ */
+@Component
+public class AdminTokenManager {
+
+	private static final Logger logger = LogManager.getLogger(AdminTokenManager.class);
+
+	// Treat a token as expired slightly early so it does not lapse in transit
+	private static final Duration EXPIRY_SKEW = Duration.ofSeconds(5);
+
+	@Value("${baseUrl}")
+	private String baseUrl;
+
+	@Value("${clientId}")
+	private String clientId;
+
+	@Value("${clientSecret}")
+	private String clientSecret;
+
+	@Value("${granttype}")
+	private String grantType;
+
+	@Value("${realm}")
+	private String realm;
+
+	@Value("${keycloak.token.refreshAheadSeconds:30}")
+	private long refreshAheadSeconds;
+
+	@Value("${keycloak.token.defaultTtlSeconds:60}")
+	private long defaultTtlSeconds;
+
+	@Autowired
+	private RestTemplate keycloakRestTemplate;
+
+	@Autowired
+	private MetricsRegistry metrics;
+
+	@Autowired
+	private KeycloakGuard keycloakGuard;
+
+	private final AtomicReference<AdminToken> current = new AtomicReference<>();
+	private final AtomicReference<CompletableFuture<AdminToken>> inFlight = new AtomicReference<>();
+	private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "keycloak-token-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// Returns a valid admin token, fetching one only when none is usable
+	public String getToken() {
+		String token = peekToken();
+		return token != null ? token : awaitRefresh().value();
+	}
+
+	// Returns the cached token without blocking, or null when a new one has to be fetched first
+	public String peekToken() {
+		AdminToken token = current.get();
+		Instant now = Instant.now();
+		if (token == null || token.isExpired(now)) {
+			return null;
+		}
+		if (token.isDueForRefresh(now)) {
+			refresh(true);
+		}
+		return token.value();
+	}
+
+	// Drops the given token if it is still the cached one, e.g. after a 401
+	public void invalidate(String staleToken) {
+		AdminToken token = current.get();
+		if (token != null && token.value().equals(staleToken) && current.compareAndSet(token, null)) {
+			logger.warn("Admin token was rejected by Keycloak, discarding cached token.");
+			metrics.increment("keycloak_admin_token_rejections");
+		}
+	}
+
+	private AdminToken awaitRefresh() {
+		try {
+			return refresh(false).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof KeycloakException keycloakException) {
+				throw keycloakException;
+			}
+			throw new KeycloakException("Error getting admin token: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	private CompletableFuture<AdminToken> refresh(boolean background) {
+		while (true) {
+			CompletableFuture<AdminToken> existing = inFlight.get();
+			if (existing != null) {
+				return existing;
+			}
+			CompletableFuture<AdminToken> future = new CompletableFuture<>();
+			if (!inFlight.compareAndSet(null, future)) {
+				continue;
+			}
+			String mode = background ? "background" : "blocking";
+			Runnable task = () -> {
+				try {
+					AdminToken token = current.get();
+					Instant now = Instant.now();
+					// Another refresh may have completed while this one was being set up
+					if (token == null || token.isExpired(now) || token.isDueForRefresh(now)) {
+						token = requestToken();
+						current.set(token);
+						metrics.increment("keycloak_admin_token_refreshes", "mode", mode, "result", "success");
+					}
+					future.complete(token);
+				} catch (RuntimeException e) {
+					metrics.increment("keycloak_admin_token_refreshes", "mode", mode, "result", "failure");
+					future.completeExceptionally(e);
+				} finally {
+					inFlight.compareAndSet(future, null);
+				}
+			};
+			if (background) {
+				logger.info("Admin token is about to expire, refreshing in the background.");
+				refreshExecutor.execute(task);
+			} else {
+				task.run();
+			}
+			return future;
+		}
+	}
+
+	private AdminToken requestToken() {
+		logger.info("Requesting admin token from Keycloak");
+		String tokenUrl = baseUrl + "/realms/" + realm + "/protocol/openid-connect/token";
+
+		MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
+		map.add("grant_type", grantType);
+		map.add("client_id", clientId);
+		map.add("client_secret", clientSecret);
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+
+		HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(map, headers);
+
+		long start = System.nanoTime();
+		String status = "IO_ERROR";
+		try {
+			ResponseEntity<String> response = keycloakGuard.call("adminToken",
+					() -> keycloakRestTemplate.exchange(tokenUrl, HttpMethod.POST, request, String.class));
+			status = String.valueOf(response.getStatusCode().value());
+
+			if (response.getStatusCode().is2xxSuccessful()) {
+				AdminToken token = parseToken(response.getBody(), Instant.now());
+				logger.info("Admin token successfully retrieved, valid until {}.", token.expiresAt());
+				return token;
+			} else {
+				logger.error("Failed to retrieve token. HTTP Status: {}", response.getStatusCode());
+				throw new KeycloakException("Failed to retrieve token. HTTP Status: " + response.getStatusCode());
+			}
+		} catch (KeycloakException e) {
+			throw e;
+		} catch (Exception e) {
+			if (e instanceof RestClientResponseException responseError) {
+				status = String.valueOf(responseError.getStatusCode().value());
+			}
+			logger.error("Error while generating the token: {}", e.getMessage(), e);
+			throw new KeycloakException("Error getting admin token: " + e.getMessage(), e);
+		} finally {
+			metrics.record("keycloak_requests", System.nanoTime() - start, "operation", "adminToken", "method",
+					"POST", "status", status);
+		}
+	}
+
+	AdminToken parseToken(String body, Instant issuedAt) throws Exception {
+		TokenResponse tokens = KeycloakCodec.readTokens(body);
+		String accessToken = tokens.getAccessToken();
+
+		long ttlSeconds = tokens.getExpiresIn();
+		Instant expiresAt;
+		if (ttlSeconds > 0) {
+			expiresAt = issuedAt.plusSeconds(ttlSeconds);
+		} else {
+			Instant exp = decodeExpiry(accessToken);
+			expiresAt = exp != null ? exp : issuedAt.plusSeconds(defaultTtlSeconds);
+		}
+
+		// Never start refreshing before half of the token lifetime has passed
+		Duration lifetime = Duration.between(issuedAt, expiresAt);
+		Duration ahead = Duration.ofSeconds(refreshAheadSeconds);
+		if (ahead.compareTo(lifetime.dividedBy(2)) > 0) {
+			ahead = lifetime.dividedBy(2);
+		}
+		return new AdminToken(accessToken, expiresAt, expiresAt.minus(ahead));
+	}
+
+	// Reads the exp claim from the JWT payload without verifying it
+	private Instant decodeExpiry(String jwt) {
+		String[] parts = jwt.split("\\.");
+		if (parts.length < 2) {
+			return null;
+		}
+		try {
+			byte[] payload = Base64.getUrlDecoder().decode(parts[1]);
+			Long exp = KeycloakCodec.readExpiry(new String(payload, StandardCharsets.UTF_8));
+			return exp != null ? Instant.ofEpochSecond(exp) : null;
+		} catch (Exception e) {
+			logger.warn("Unable to read expiry from admin token: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		refreshExecutor.shutdownNow();
+	}
+
+	record AdminToken(String value, Instant expiresAt, Instant refreshAt) {
+
+		boolean isExpired(Instant now) {
+			return !now.isBefore(expiresAt.minus(EXPIRY_SKEW));
+		}
+
+		boolean isDueForRefresh(Instant now) {
+			return !now.isBefore(refreshAt);
+		}
+	}
+}
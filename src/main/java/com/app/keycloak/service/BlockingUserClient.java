@@ -0,0 +1,58 @@
+package com.app.keycloak.service;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.app.keycloak.entity.TokenResponse;
+import com.app.keycloak.entity.UserDto;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Runs the blocking UsersService calls when subscribed, i.e. on the request thread
+@Service
+@ConditionalOnProperty(name = "keycloak.client.mode", havingValue = "blocking", matchIfMissing = true)
+public class BlockingUserClient implements UserClient {
+
+	@Autowired
+	private UsersService usersService;
+
+	@Override
+	public Flux<UserDto> getUsers(int first, int max) {
+		return Mono.fromCallable(() -> usersService.getUsers(first, max)).flatMapIterable(users -> users);
+	}
+
+	@Override
+	public Mono<List<UserDto>> getUserInfo(String username) {
+		return Mono.fromCallable(() -> usersService.getUserInfo(username));
+	}
+
+	@Override
+	public Mono<String> addUser(UserDto user) {
+		return Mono.fromCallable(() -> usersService.addUser(user));
+	}
+
+	@Override
+	public Mono<Boolean> deleteUser(String username) {
+		return Mono.fromCallable(() -> usersService.deleteUserIfPresent(username));
+	}
+
+	@Override
+	public Mono<TokenResponse> loginValidation(String username, String password) {
+		return Mono.fromCallable(() -> usersService.loginValidation(username, password));
+	}
+
+	@Override
+	public Mono<TokenResponse> refreshToken(String refreshToken) {
+		return Mono.fromCallable(() -> usersService.refreshToken(refreshToken));
+	}
+
+	@Override
+	public Map<String, Object> getCoalescingStats() {
+		return usersService.getCoalescingStats();
+	}
+}
@@ -0,0 +1,221 @@
+package com.app.keycloak.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import com.app.keycloak.entity.BulkUserReport;
+import com.app.keycloak.entity.BulkUserResult;
+import com.app.keycloak.entity.BulkUserResult.Status;
+import com.app.keycloak.entity.UserDto;
+import com.app.keycloak.exceptions.KeycloakException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Bulk user operations against Keycloak. Records are read from the request as
+ * they arrive and fanned out to a fixed number of workers; reading blocks
+ * while all workers are busy, so a large upload never queues up in memory.
+ * Every record gets its own entry in the report and a failing record does not
+ * stop the rest of the batch.
+ */
+@Service
+public class BulkUserService {
+
+	private static final Logger logger = LogManager.getLogger(BulkUserService.class);
+
+	@Value("${keycloak.bulk.concurrency:8}")
+	private int concurrency;
+
+	@Autowired
+	private UsersService usersService;
+
+	// Spring's mapper, which can bind UserDto through its constructor
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	private ExecutorService executor;
+	private Semaphore permits;
+
+	@PostConstruct
+	void init() {
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+			Thread thread = new Thread(runnable, "keycloak-bulk-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		permits = new Semaphore(concurrency);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	// Creates every user in a JSON array or NDJSON body
+	public BulkUserReport addUsers(InputStream body, boolean ndjson) throws IOException {
+		logger.info("Starting bulk user creation with concurrency {}.", concurrency);
+		List<Future<BulkUserResult>> pending = new ArrayList<>();
+		ObjectReader userReader = objectMapper.readerFor(UserDto.class);
+
+		if (ndjson) {
+			BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+			String line;
+			while ((line = lines.readLine()) != null) {
+				if (line.isBlank()) {
+					continue;
+				}
+				int index = pending.size();
+				try {
+					pending.add(submitCreate(index, userReader.readValue(line)));
+				} catch (JsonProcessingException e) {
+					pending.add(invalidRecord(index, e));
+				}
+			}
+		} else {
+			try (MappingIterator<JsonNode> records = objectMapper.readerFor(JsonNode.class).readValues(body)) {
+				while (records.hasNext()) {
+					JsonNode record = records.next();
+					int index = pending.size();
+					try {
+						pending.add(submitCreate(index, userReader.treeToValue(record, UserDto.class)));
+					} catch (JsonProcessingException e) {
+						pending.add(invalidRecord(index, e));
+					}
+				}
+			} catch (RuntimeException | JsonProcessingException e) {
+				// A syntax error leaves the parser unusable, so report it and keep what was already read
+				logger.warn("Malformed bulk input after {} records: {}", pending.size(), e.getMessage());
+				pending.add(CompletableFuture.completedFuture(new BulkUserResult(pending.size(), null,
+						Status.FAILED, "Malformed input, remaining records were not read: " + e.getMessage())));
+			}
+		}
+
+		BulkUserReport report = new BulkUserReport(collect(pending));
+		logger.info("Bulk user creation finished: {}", report.getSummary());
+		return report;
+	}
+
+	// Deletes every listed username, skipping the search for usernames with a known ID
+	public BulkUserReport deleteUsers(List<String> usernames) throws IOException {
+		logger.info("Starting bulk deletion of {} users with concurrency {}.", usernames.size(), concurrency);
+		List<Future<BulkUserResult>> pending = new ArrayList<>(usernames.size());
+		for (String username : usernames) {
+			int index = pending.size();
+			if (username == null || username.isBlank()) {
+				pending.add(CompletableFuture.completedFuture(
+						new BulkUserResult(index, username, Status.FAILED, "Username is mandatory")));
+			} else {
+				pending.add(submit(() -> deleteUser(index, username)));
+			}
+		}
+
+		BulkUserReport report = new BulkUserReport(collect(pending));
+		logger.info("Bulk user deletion finished: {}", report.getSummary());
+		return report;
+	}
+
+	private Future<BulkUserResult> submitCreate(int index, UserDto user) throws InterruptedIOException {
+		if (user == null || user.getUsername() == null || user.getUsername().isBlank()) {
+			return CompletableFuture.completedFuture(
+					new BulkUserResult(index, null, Status.FAILED, "Username is mandatory"));
+		}
+		return submit(() -> createUser(index, user));
+	}
+
+	// Hands the task to a worker, waiting while every worker is busy
+	private Future<BulkUserResult> submit(Supplier<BulkUserResult> task) throws InterruptedIOException {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a free Keycloak worker");
+		}
+		try {
+			return executor.submit(() -> {
+				try {
+					return task.get();
+				} finally {
+					permits.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private BulkUserResult createUser(int index, UserDto user) {
+		try {
+			usersService.addUser(user);
+			return new BulkUserResult(index, user.getUsername(), Status.CREATED, null);
+		} catch (KeycloakException e) {
+			if (e.getCause() instanceof HttpClientErrorException.Conflict) {
+				return new BulkUserResult(index, user.getUsername(), Status.CONFLICT, "User already exists");
+			}
+			return new BulkUserResult(index, user.getUsername(), Status.FAILED, e.getMessage());
+		} catch (Exception e) {
+			return new BulkUserResult(index, user.getUsername(), Status.FAILED, e.getMessage());
+		}
+	}
+
+	private BulkUserResult deleteUser(int index, String username) {
+		try {
+			if (usersService.deleteUserIfPresent(username)) {
+				return new BulkUserResult(index, username, Status.DELETED, null);
+			}
+			return new BulkUserResult(index, username, Status.NOT_FOUND, "User not found");
+		} catch (Exception e) {
+			return new BulkUserResult(index, username, Status.FAILED, e.getMessage());
+		}
+	}
+
+	private static Future<BulkUserResult> invalidRecord(int index, JsonProcessingException e) {
+		return CompletableFuture.completedFuture(
+				new BulkUserResult(index, null, Status.FAILED, "Invalid record: " + e.getOriginalMessage()));
+	}
+
+	private static List<BulkUserResult> collect(List<Future<BulkUserResult>> pending)
+			throws InterruptedIOException {
+		List<BulkUserResult> results = new ArrayList<>(pending.size());
+		for (int index = 0; index < pending.size(); index++) {
+			try {
+				results.add(pending.get(index).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for bulk results");
+			} catch (ExecutionException e) {
+				results.add(new BulkUserResult(index, null, Status.FAILED, e.getCause().getMessage()));
+			}
+		}
+		return results;
+	}
+}
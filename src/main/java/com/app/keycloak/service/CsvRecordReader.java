@@ -0,0 +1,73 @@
+package com.app.keycloak.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming RFC 4180 reader: comma separated, fields optionally
+ * quoted with {@code "}, doubled quotes inside quoted fields, and line breaks
+ * allowed inside quotes. Only the current record is held in memory.
+ */
+final class CsvRecordReader {
+
+	private final PushbackReader in;
+
+	CsvRecordReader(Reader reader) {
+		this.in = new PushbackReader(new BufferedReader(reader), 1);
+	}
+
+	// Returns the next record's fields, or null at the end of the input
+	List<String> next() throws IOException {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean read = false;
+		int c;
+		while ((c = in.read()) != -1) {
+			read = true;
+			if (quoted) {
+				if (c != '"') {
+					field.append((char) c);
+				} else if (peek() == '"') {
+					field.append((char) in.read());
+				} else {
+					quoted = false;
+				}
+			} else if (c == '"' && field.length() == 0) {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\n') {
+				break;
+			} else if (c == '\r') {
+				if (peek() == '\n') {
+					in.read();
+				}
+				break;
+			} else {
+				field.append((char) c);
+			}
+		}
+		if (!read) {
+			return null;
+		}
+		if (quoted) {
+			throw new IOException("Unterminated quoted field");
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	private int peek() throws IOException {
+		int c = in.read();
+		if (c != -1) {
+			in.unread(c);
+		}
+		return c;
+	}
+}
@@ -0,0 +1,247 @@
+package com.app.keycloak.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.exceptions.CustomException;
+import com.app.keycloak.exceptions.InsufficientStockException;
+import com.app.keycloak.exceptions.ProductNotFoundException;
+import com.app.keycloak.repository.ProductRepository;
+
+/**
+ * Atomic stock reservations. The database stays the only source of truth:
+ * every change is a conditional {@code UPDATE ... WHERE quantity + delta >= 0},
+ * so stock can never go negative, whichever instance runs it.
+ * <p>
+ * To keep a hot product from piling up row locks, each product has a lane
+ * with at most one UPDATE in flight from this instance. Requests that arrive
+ * meanwhile queue up and the next UPDATE applies them together. Only if the
+ * combined change does not fit the remaining stock are the requests applied
+ * one by one, releases first and reservations in arrival order. A caller only
+ * applies batches until its own request is done, then hands the lane over.
+ */
+@Service
+public class InventoryService {
+
+	private static final Logger logger = LogManager.getLogger(InventoryService.class);
+
+	@Value("${product.inventory.maxBatch:100}")
+	private int maxBatch;
+
+	@Value("${product.inventory.maxQuantity:1000000}")
+	private int maxQuantity;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private ProductCache productCache;
+
+	@Autowired
+	private ProductSearchIndex searchIndex;
+
+	// One lane per product that has seen a stock change; a lane is only a queue and a flag
+	private final ConcurrentHashMap<Long, Lane> lanes = new ConcurrentHashMap<>();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder updates = new LongAdder();
+
+	public void reserve(Long productId, int quantity) throws CustomException {
+		validateQuantity(quantity);
+		if (!submit(productId, -quantity)) {
+			logger.warn("Not enough stock to reserve {} of product {}", quantity, productId);
+			throw new InsufficientStockException("Not enough stock left for this product");
+		}
+		logger.info("Reserved {} of product {}", quantity, productId);
+	}
+
+	public void release(Long productId, int quantity) throws CustomException {
+		validateQuantity(quantity);
+		submit(productId, quantity);
+		logger.info("Released {} of product {}", quantity, productId);
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("requests", requests.sum());
+		stats.put("updates", updates.sum());
+		stats.put("lanes", lanes.size());
+		return stats;
+	}
+
+	private void validateQuantity(int quantity) throws CustomException {
+		if (quantity <= 0) {
+			throw new CustomException("Quantity must be greater than zero");
+		}
+		if (quantity > maxQuantity) {
+			throw new CustomException("Quantity must not exceed " + maxQuantity);
+		}
+	}
+
+	private boolean submit(Long productId, int delta) throws CustomException {
+		requests.increment();
+		Lane lane = lanes.computeIfAbsent(productId, id -> new Lane());
+		Adjustment adjustment = new Adjustment(delta, new CompletableFuture<>());
+		lane.queue.add(adjustment);
+		drain(productId, lane, adjustment);
+		try {
+			return adjustment.result().join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof ProductNotFoundException notFound) {
+				throw notFound;
+			}
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw e;
+		}
+	}
+
+	// Whoever finds the lane idle applies the queued requests, but only until its own one is done
+	private void drain(Long productId, Lane lane, Adjustment own) {
+		while (!own.result().isDone()) {
+			if (!lane.draining.compareAndSet(false, true)) {
+				lane.awaitIdle(own);
+				continue;
+			}
+			try {
+				List<Adjustment> batch = new ArrayList<>();
+				Adjustment next;
+				while (batch.size() < maxBatch && (next = lane.queue.poll()) != null) {
+					batch.add(next);
+				}
+				if (!batch.isEmpty()) {
+					apply(productId, batch);
+				}
+			} finally {
+				lane.draining.set(false);
+				lane.signalIdle();
+			}
+		}
+	}
+
+	private void apply(Long productId, List<Adjustment> batch) {
+		try {
+			// Summed as a long; a total that does not fit an int is applied one by one below
+			long net = 0;
+			for (Adjustment adjustment : batch) {
+				net += adjustment.delta();
+			}
+			if (fitsInt(net) && adjust(productId, (int) net)) {
+				batch.forEach(adjustment -> adjustment.result().complete(true));
+				changed(productId, (int) net, 1);
+				return;
+			}
+			if (!productRepository.existsById(productId)) {
+				ProductNotFoundException notFound = new ProductNotFoundException("Product not found");
+				batch.forEach(adjustment -> adjustment.result().completeExceptionally(notFound));
+				return;
+			}
+			if (batch.size() == 1) {
+				batch.get(0).result().complete(false);
+				return;
+			}
+
+			// Not enough for everyone: releases cannot fail, then reservations first come first served
+			long applied = 0;
+			int updated = 0;
+			long released = 0;
+			for (Adjustment adjustment : batch) {
+				released += Math.max(adjustment.delta(), 0);
+			}
+			if (released > 0 && fitsInt(released) && adjust(productId, (int) released)) {
+				applied += released;
+				updated++;
+			} else if (released > 0) {
+				for (Adjustment adjustment : batch) {
+					if (adjustment.delta() > 0 && adjust(productId, adjustment.delta())) {
+						applied += adjustment.delta();
+						updated++;
+					}
+				}
+			}
+			for (Adjustment adjustment : batch) {
+				if (adjustment.delta() > 0) {
+					adjustment.result().complete(true);
+				} else if (adjust(productId, adjustment.delta())) {
+					applied += adjustment.delta();
+					updated++;
+					adjustment.result().complete(true);
+				} else {
+					adjustment.result().complete(false);
+				}
+			}
+			if (updated > 0) {
+				changed(productId, (int) applied, updated);
+			}
+		} catch (RuntimeException e) {
+			logger.error("Stock update for product {} failed: {}", productId, e.getMessage(), e);
+			batch.forEach(adjustment -> adjustment.result().completeExceptionally(e));
+		}
+	}
+
+	private static boolean fitsInt(long value) {
+		return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+	}
+
+	private boolean adjust(Long productId, int delta) {
+		updates.increment();
+		return productRepository.adjustQuantity(productId, delta) > 0;
+	}
+
+	// Keeps the cache and search index in step with the new stock level
+	private void changed(Long productId, int delta, int updated) {
+		productCache.invalidate(productId);
+		Product indexed = searchIndex.isEnabled() ? searchIndex.get(productId) : null;
+		if (indexed != null) {
+			indexed.setQuantity(indexed.getQuantity() + delta);
+			if (indexed.getVersion() != null) {
+				indexed.setVersion(indexed.getVersion() + updated);
+			}
+			searchIndex.put(indexed);
+		}
+	}
+
+	private record Adjustment(int delta, CompletableFuture<Boolean> result) {
+	}
+
+	private static final class Lane {
+
+		private final ConcurrentLinkedQueue<Adjustment> queue = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean draining = new AtomicBoolean();
+
+		// Waits for the current batch to finish, which may have applied the caller's request.
+		// An interrupt is kept for later: the request is queued and will be applied either way
+		private synchronized void awaitIdle(Adjustment own) {
+			boolean interrupted = false;
+			while (draining.get() && !own.result().isDone()) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private synchronized void signalIdle() {
+			notifyAll();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.app.keycloak.service;
+
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import com.app.keycloak.exceptions.KeycloakException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Signing keys of the realm, read from its JWKS endpoint and kept in memory.
+ * <p>
+ * The key set is fetched lazily and re-fetched when a token names a
+ * {@code kid} we have not seen, which is how Keycloak key rotation shows up.
+ * Re-fetches are rate limited so tokens with made-up key IDs cannot be used
+ * to hammer Keycloak. The fetch runs through {@link KeycloakGuard} and
+ * outside the lock: threads that need the same fetch wait for it at most for
+ * the guard's timeout, and requests with known keys never wait.
+ */
+@Component
+public class JwksKeyProvider {
+
+	private static final Logger logger = LogManager.getLogger(JwksKeyProvider.class);
+
+	@Value("${baseUrl}")
+	private String baseUrl;
+
+	@Value("${realm}")
+	private String realm;
+
+	@Value("${keycloak.auth.jwksMinRefreshSeconds:30}")
+	private long minRefreshSeconds;
+
+	@Autowired
+	private RestTemplate keycloakRestTemplate;
+
+	@Autowired
+	private KeycloakGuard keycloakGuard;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private volatile Map<String, RSAPublicKey> keys = Map.of();
+	private volatile Instant lastFetch = Instant.EPOCH;
+	// Guarded by this; set while a fetch is running so concurrent misses share it
+	private CompletableFuture<Map<String, RSAPublicKey>> inFlight;
+
+	// Returns the RS256 key with the given ID, or null if the realm does not have it
+	public RSAPublicKey getKey(String kid) {
+		RSAPublicKey key = keys.get(kid);
+		if (key != null) {
+			return key;
+		}
+		CompletableFuture<Map<String, RSAPublicKey>> fetch;
+		boolean fetching = false;
+		synchronized (this) {
+			// Another thread may have fetched the rotated key set meanwhile
+			key = keys.get(kid);
+			if (key != null) {
+				return key;
+			}
+			if (inFlight != null) {
+				fetch = inFlight;
+			} else if (Instant.now().isAfter(lastFetch.plus(Duration.ofSeconds(minRefreshSeconds)))) {
+				logger.info("Unknown signing key {}, fetching the realm key set.", kid);
+				// Counted from the attempt, so a failing Keycloak is not asked again for every token
+				lastFetch = Instant.now();
+				fetch = inFlight = new CompletableFuture<>();
+				fetching = true;
+			} else {
+				return null;
+			}
+		}
+
+		if (fetching) {
+			try {
+				keys = fetchKeys();
+				fetch.complete(keys);
+			} catch (RuntimeException e) {
+				fetch.completeExceptionally(e);
+			} finally {
+				synchronized (this) {
+					inFlight = null;
+				}
+			}
+		}
+		try {
+			return fetch.join().get(kid);
+		} catch (CompletionException e) {
+			// fetchKeys only fails with a KeycloakException
+			throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+		}
+	}
+
+	private Map<String, RSAPublicKey> fetchKeys() {
+		String certsUrl = baseUrl + "/realms/" + realm + "/protocol/openid-connect/certs";
+		try {
+			String body = keycloakGuard.call("jwks", () -> keycloakRestTemplate.getForObject(certsUrl, String.class));
+			Map<String, RSAPublicKey> fetched = parseKeys(mapper.readTree(body));
+			logger.info("Loaded {} signing keys for realm {}.", fetched.size(), realm);
+			return fetched;
+		} catch (Exception e) {
+			logger.error("Error while fetching the realm key set: {}", e.getMessage(), e);
+			throw new KeycloakException("Error fetching realm signing keys: " + e.getMessage(), e);
+		}
+	}
+
+	static Map<String, RSAPublicKey> parseKeys(JsonNode jwks) throws Exception {
+		Map<String, RSAPublicKey> parsed = new HashMap<>();
+		KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+		for (JsonNode jwk : jwks.path("keys")) {
+			if (!"RSA".equals(jwk.path("kty").asText()) || "enc".equals(jwk.path("use").asText())) {
+				continue;
+			}
+			BigInteger modulus = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.get("n").asText()));
+			BigInteger exponent = new BigInteger(1, Base64.getUrlDecoder().decode(jwk.get("e").asText()));
+			parsed.put(jwk.path("kid").asText(),
+					(RSAPublicKey) keyFactory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+		}
+		return Map.copyOf(parsed);
+	}
+}
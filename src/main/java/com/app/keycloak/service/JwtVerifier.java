@@ -0,0 +1,120 @@
+package com.app.keycloak.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.app.keycloak.exceptions.InvalidTokenException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Verifies Keycloak access tokens in-process: RS256 signature against the
+ * realm keys, expiry, issuer and audience. Only the key set is ever fetched
+ * from Keycloak, and only when it rotates.
+ */
+@Component
+public class JwtVerifier {
+
+	@Value("${keycloak.auth.issuer:${baseUrl}/realms/${realm}}")
+	private String issuer;
+
+	@Value("${keycloak.auth.audience:${clientId}}")
+	private String audience;
+
+	@Value("${keycloak.auth.clockSkewSeconds:30}")
+	private long clockSkewSeconds;
+
+	@Autowired
+	private JwksKeyProvider keyProvider;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	public VerifiedToken verify(String token) {
+		String[] parts = token.split("\\.");
+		if (parts.length != 3) {
+			throw new InvalidTokenException("Token is not a signed JWT");
+		}
+
+		JsonNode header = decode(parts[0]);
+		if (!"RS256".equals(header.path("alg").asText())) {
+			throw new InvalidTokenException("Unsupported token algorithm: " + header.path("alg").asText());
+		}
+		RSAPublicKey key = keyProvider.getKey(header.path("kid").asText());
+		if (key == null) {
+			throw new InvalidTokenException("Token is signed with an unknown key");
+		}
+		if (!signatureMatches(parts, key)) {
+			throw new InvalidTokenException("Token signature is invalid");
+		}
+
+		JsonNode claims = decode(parts[1]);
+		long now = Instant.now().getEpochSecond();
+		if (!claims.path("exp").canConvertToLong() || claims.get("exp").asLong() + clockSkewSeconds < now) {
+			throw new InvalidTokenException("Token has expired");
+		}
+		if (claims.has("nbf") && claims.get("nbf").asLong() - clockSkewSeconds > now) {
+			throw new InvalidTokenException("Token is not valid yet");
+		}
+		if (!issuer.equals(claims.path("iss").asText())) {
+			throw new InvalidTokenException("Token was issued by " + claims.path("iss").asText());
+		}
+		if (!hasAudience(claims)) {
+			throw new InvalidTokenException("Token is not intended for " + audience);
+		}
+
+		List<String> roles = new ArrayList<>();
+		claims.path("realm_access").path("roles").forEach(role -> roles.add(role.asText()));
+		return new VerifiedToken(claims.path("sub").asText(), claims.path("preferred_username").asText(null),
+				List.copyOf(roles), Instant.ofEpochSecond(claims.get("exp").asLong()));
+	}
+
+	// Keycloak only adds the client to aud with an audience mapper, otherwise it is the authorized party
+	private boolean hasAudience(JsonNode claims) {
+		JsonNode aud = claims.path("aud");
+		if (aud.isArray()) {
+			for (JsonNode value : aud) {
+				if (audience.equals(value.asText())) {
+					return true;
+				}
+			}
+		} else if (audience.equals(aud.asText())) {
+			return true;
+		}
+		return audience.equals(claims.path("azp").asText());
+	}
+
+	private static boolean signatureMatches(String[] parts, RSAPublicKey key) {
+		try {
+			Signature signature = Signature.getInstance("SHA256withRSA");
+			signature.initVerify(key);
+			signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+			return signature.verify(Base64.getUrlDecoder().decode(parts[2]));
+		} catch (Exception e) {
+			throw new InvalidTokenException("Token signature could not be checked", e);
+		}
+	}
+
+	private JsonNode decode(String part) {
+		try {
+			return mapper.readTree(Base64.getUrlDecoder().decode(part));
+		} catch (Exception e) {
+			throw new InvalidTokenException("Token is malformed", e);
+		}
+	}
+
+	public record VerifiedToken(String subject, String username, List<String> roles, Instant expiresAt) {
+
+		public boolean hasRole(String role) {
+			return roles.contains(role);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.app.keycloak.service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.app.keycloak.entity.TokenResponse;
+import com.app.keycloak.entity.UserDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Reads and writes the Keycloak JSON we exchange, shared by the blocking and
+ * reactive Keycloak clients.
+ * <p>
+ * Responses are decoded with the streaming parser straight into
+ * {@link KeycloakUser} and {@link TokenResponse}, skipping every field we do
+ * not use instead of building a tree of the whole body, and request bodies
+ * are written field by field. The reader and writer are created once and are
+ * safe to share between threads.
+ */
+final class KeycloakCodec {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+	private static final ObjectReader READER = mapper.reader();
+	private static final ObjectWriter WRITER = mapper.writer();
+
+	private KeycloakCodec() {
+	}
+
+	// Builds the body of a create-user request
+	static String writeUser(UserDto user) throws JsonProcessingException {
+		StringWriter out = new StringWriter(256);
+		try (JsonGenerator json = WRITER.createGenerator(out)) {
+			json.writeStartObject();
+			json.writeStringField("username", user.getUsername());
+			json.writeStringField("firstName", user.getFirstName());
+			json.writeStringField("lastName", user.getLastName());
+			json.writeStringField("email", user.getEmailid());
+			json.writeBooleanField("emailVerified", true);
+			json.writeBooleanField("enabled", true);
+
+			json.writeArrayFieldStart("credentials");
+			json.writeStartObject();
+			json.writeStringField("type", "password");
+			json.writeStringField("value", user.getPassword());
+			json.writeBooleanField("temporary", false);
+			json.writeEndObject();
+			json.writeEndArray();
+
+			json.writeObjectFieldStart("attributes");
+			json.writeArrayFieldStart("city");
+			json.writeString(user.getCity());
+			json.writeEndArray();
+			json.writeArrayFieldStart("phno");
+			json.writeString(user.getMobilenumber());
+			json.writeEndArray();
+			json.writeEndObject();
+
+			json.writeEndObject();
+		} catch (JsonProcessingException e) {
+			throw e;
+		} catch (IOException e) {
+			// A StringWriter does not fail, so this is as unexpected as it is for writeValueAsString
+			throw JsonMappingException.fromUnexpectedIOE(e);
+		}
+		return out.toString();
+	}
+
+	// Decodes a user search response, an array of user representations
+	static List<KeycloakUser> readUsers(String body) throws IOException {
+		try (JsonParser json = READER.createParser(body)) {
+			if (json.nextToken() != JsonToken.START_ARRAY) {
+				throw new JsonParseException(json, "Expected an array of users");
+			}
+			List<KeycloakUser> users = new ArrayList<>();
+			while (json.nextToken() == JsonToken.START_OBJECT) {
+				users.add(readUser(json));
+			}
+			return users;
+		}
+	}
+
+	static TokenResponse readTokens(String body) throws IOException {
+		try (JsonParser json = READER.createParser(body)) {
+			if (json.nextToken() != JsonToken.START_OBJECT) {
+				throw new JsonParseException(json, "Expected a token response object");
+			}
+			String accessToken = null;
+			long expiresIn = 0;
+			String refreshToken = null;
+			long refreshExpiresIn = 0;
+			String tokenType = "Bearer";
+			String field;
+			while ((field = json.nextFieldName()) != null) {
+				json.nextToken();
+				switch (field) {
+				case "access_token" -> accessToken = json.getValueAsString();
+				case "expires_in" -> expiresIn = json.getValueAsLong();
+				case "refresh_token" -> refreshToken = json.getValueAsString();
+				case "refresh_expires_in" -> refreshExpiresIn = json.getValueAsLong();
+				case "token_type" -> tokenType = json.getValueAsString(tokenType);
+				default -> json.skipChildren();
+				}
+			}
+			if (accessToken == null) {
+				throw new JsonParseException(json, "Token response has no access_token");
+			}
+			return new TokenResponse(accessToken, expiresIn, refreshToken, refreshExpiresIn, tokenType);
+		}
+	}
+
+	// Reads the numeric exp claim of a decoded JWT payload, or null if there is none
+	static Long readExpiry(String payload) throws IOException {
+		try (JsonParser json = READER.createParser(payload)) {
+			if (json.nextToken() != JsonToken.START_OBJECT) {
+				throw new JsonParseException(json, "Expected a JWT claims object");
+			}
+			String field;
+			while ((field = json.nextFieldName()) != null) {
+				JsonToken token = json.nextToken();
+				if (field.equals("exp") && token.isNumeric()) {
+					return json.getValueAsLong();
+				}
+				json.skipChildren();
+			}
+			return null;
+		}
+	}
+
+	// Reads one user object; the parser is on its START_OBJECT and is left on its END_OBJECT
+	private static KeycloakUser readUser(JsonParser json) throws IOException {
+		String id = null;
+		String username = null;
+		String firstName = null;
+		String lastName = null;
+		String email = null;
+		String city = null;
+		String phno = null;
+		String field;
+		while ((field = json.nextFieldName()) != null) {
+			json.nextToken();
+			switch (field) {
+			case "id" -> id = json.getValueAsString();
+			case "username" -> username = json.getValueAsString();
+			case "firstName" -> firstName = json.getValueAsString();
+			case "lastName" -> lastName = json.getValueAsString();
+			case "email" -> email = json.getValueAsString();
+			case "attributes" -> {
+				if (json.currentToken() != JsonToken.START_OBJECT) {
+					json.skipChildren();
+					break;
+				}
+				String attribute;
+				while ((attribute = json.nextFieldName()) != null) {
+					json.nextToken();
+					if (attribute.equals("city")) {
+						city = firstValue(json);
+					} else if (attribute.equals("phno")) {
+						phno = firstValue(json);
+					} else {
+						json.skipChildren();
+					}
+				}
+			}
+			default -> json.skipChildren();
+			}
+		}
+		return new KeycloakUser(id, username, firstName, lastName, email, city, phno);
+	}
+
+	// First entry of an attribute's value list, or the value itself if it is not a list
+	private static String firstValue(JsonParser json) throws IOException {
+		if (json.currentToken() != JsonToken.START_ARRAY) {
+			String value = json.currentToken().isScalarValue() ? json.getValueAsString() : null;
+			json.skipChildren();
+			return value;
+		}
+		String value = null;
+		JsonToken token;
+		while ((token = json.nextToken()) != JsonToken.END_ARRAY) {
+			if (value == null && token.isScalarValue()) {
+				value = json.getValueAsString();
+			} else {
+				json.skipChildren();
+			}
+		}
+		return value;
+	}
+}
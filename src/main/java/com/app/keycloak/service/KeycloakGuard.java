@@ -0,0 +1,355 @@
+package com.app.keycloak.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.app.keycloak.exceptions.KeycloakException;
+import com.app.keycloak.exceptions.KeycloakUnavailableException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+
+/**
+ * Timeouts, a bulkhead and a circuit breaker around every call to Keycloak,
+ * so a slow or failing Keycloak costs request threads milliseconds instead of
+ * seconds and cannot take unrelated endpoints down with it.
+ * <p>
+ * Each call takes one of a fixed number of permits or is rejected straight
+ * away. Blocking calls run on the guard's own threads while the caller waits
+ * at most the operation's timeout, {@code keycloak.resilience.timeoutMs.<operation>}
+ * or {@code keycloak.resilience.timeoutMs}; a call that is given up on keeps
+ * its permit until the HTTP client's own timeout ends it, since a socket read
+ * cannot be interrupted.
+ * <p>
+ * The breaker counts the outcome of the last calls. Once enough of them have
+ * failed it opens and rejects every call for a while, then lets a few trial
+ * calls through and closes again if they all succeed. Only signs of an outage
+ * count as failures: timeouts, I/O errors and 5xx responses. A 4xx means
+ * Keycloak answered, e.g. a wrong password or an unknown user.
+ */
+@Component
+public class KeycloakGuard {
+
+	private static final Logger logger = LogManager.getLogger(KeycloakGuard.class);
+
+	private static final String NAME = "keycloak";
+
+	enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	@Value("${keycloak.resilience.enabled:true}")
+	private boolean enabled;
+
+	@Value("${keycloak.resilience.maxConcurrentCalls:20}")
+	private int maxConcurrentCalls;
+
+	@Value("${keycloak.resilience.timeoutMs:2000}")
+	private long defaultTimeoutMs;
+
+	@Value("${keycloak.resilience.slidingWindowSize:20}")
+	private int slidingWindowSize;
+
+	@Value("${keycloak.resilience.minimumCalls:10}")
+	private int minimumCalls;
+
+	@Value("${keycloak.resilience.failureRateThreshold:50}")
+	private int failureRateThreshold;
+
+	@Value("${keycloak.resilience.openDurationMs:30000}")
+	private long openDurationMs;
+
+	@Value("${keycloak.resilience.halfOpenCalls:3}")
+	private int halfOpenCalls;
+
+	@Autowired
+	private Environment environment;
+
+	@Autowired
+	private MetricsRegistry metrics;
+
+	private final ConcurrentMap<String, Long> timeouts = new ConcurrentHashMap<>();
+
+	private Semaphore bulkhead;
+	private ExecutorService executor;
+
+	// Breaker state, guarded by this
+	private State state = State.CLOSED;
+	private boolean[] outcomes;
+	private int recorded;
+	private int next;
+	private int failures;
+	private long openUntil;
+	private int trialsInFlight;
+	private int trialSuccesses;
+
+	@PostConstruct
+	void init() {
+		bulkhead = new Semaphore(maxConcurrentCalls);
+		outcomes = new boolean[slidingWindowSize];
+		AtomicInteger threadCount = new AtomicInteger();
+		// Never more tasks than permits, so the queue stays empty
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 60,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "keycloak-call-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		pool.allowCoreThreadTimeOut(true);
+		executor = pool;
+
+		for (State each : State.values()) {
+			metrics.gauge("resilience4j_circuitbreaker_state", () -> state() == each ? 1 : 0, "name", NAME, "state",
+					each.name().toLowerCase(Locale.ROOT));
+		}
+		metrics.gauge("resilience4j_circuitbreaker_failure_rate", this::failureRate, "name", NAME);
+		metrics.gauge("resilience4j_bulkhead_available_concurrent_calls", bulkhead::availablePermits, "name", NAME);
+		metrics.gauge("resilience4j_bulkhead_max_allowed_concurrent_calls", () -> maxConcurrentCalls, "name", NAME);
+		logger.info("Keycloak calls limited to {} concurrent with a default timeout of {} ms.", maxConcurrentCalls,
+				defaultTimeoutMs);
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	// Runs a blocking Keycloak call, waiting no longer than the operation's timeout
+	public <T> T call(String operation, Supplier<T> call) {
+		if (!enabled) {
+			return call.get();
+		}
+		boolean trial = enter(operation);
+		// The permit goes back once, either when the call ends or when it is dropped before it started
+		AtomicBoolean started = new AtomicBoolean();
+		Future<T> future;
+		try {
+			future = executor.submit(() -> {
+				if (!started.compareAndSet(false, true)) {
+					return null;
+				}
+				try {
+					return call.get();
+				} finally {
+					bulkhead.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			bulkhead.release();
+			complete(trial, null, false);
+			throw new KeycloakUnavailableException("Keycloak client is shutting down", e);
+		}
+
+		long timeoutMs = timeoutMs(operation);
+		try {
+			T result = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+			complete(trial, null, true);
+			return result;
+		} catch (TimeoutException e) {
+			abandon(future, started);
+			KeycloakUnavailableException timedOut = timedOut(operation, timeoutMs, e);
+			complete(trial, timedOut, true);
+			throw timedOut;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			complete(trial, cause, true);
+			if (cause instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			if (cause instanceof Error error) {
+				throw error;
+			}
+			throw new KeycloakException("Keycloak call failed: " + cause.getMessage(), cause);
+		} catch (InterruptedException e) {
+			abandon(future, started);
+			complete(trial, null, false);
+			Thread.currentThread().interrupt();
+			throw new KeycloakException("Interrupted while waiting for Keycloak", e);
+		}
+	}
+
+	// Non-blocking variant; the timeout cancels the request, which frees its permit
+	public <T> Mono<T> call(String operation, Mono<T> call) {
+		if (!enabled) {
+			return call;
+		}
+		return Mono.defer(() -> {
+			boolean trial = enter(operation);
+			long timeoutMs = timeoutMs(operation);
+			AtomicBoolean finished = new AtomicBoolean();
+			return call.timeout(Duration.ofMillis(timeoutMs))
+					.onErrorMap(TimeoutException.class, e -> timedOut(operation, timeoutMs, e))
+					.doOnSuccess(result -> {
+						if (finished.compareAndSet(false, true)) {
+							bulkhead.release();
+							complete(trial, null, true);
+						}
+					})
+					.doOnError(e -> {
+						if (finished.compareAndSet(false, true)) {
+							bulkhead.release();
+							complete(trial, e, true);
+						}
+					})
+					.doOnCancel(() -> {
+						if (finished.compareAndSet(false, true)) {
+							bulkhead.release();
+							complete(trial, null, false);
+						}
+					});
+		});
+	}
+
+	private void abandon(Future<?> future, AtomicBoolean started) {
+		future.cancel(true);
+		if (started.compareAndSet(false, true)) {
+			bulkhead.release();
+		}
+	}
+
+	/**
+	 * Whether the error means Keycloak is down or too slow rather than that it
+	 * refused the request. Such errors trip the breaker and let read paths fall
+	 * back to stale data.
+	 */
+	public static boolean isOutage(Throwable error) {
+		for (Throwable e = error; e != null; e = e.getCause()) {
+			if (e instanceof KeycloakUnavailableException || e instanceof ResourceAccessException
+					|| e instanceof WebClientRequestException || e instanceof IOException
+					|| e instanceof TimeoutException) {
+				return true;
+			}
+			if (e instanceof RestClientResponseException responseError) {
+				return responseError.getStatusCode().is5xxServerError();
+			}
+			if (e instanceof WebClientResponseException responseError) {
+				return responseError.getStatusCode().is5xxServerError();
+			}
+		}
+		return false;
+	}
+
+	synchronized State state() {
+		if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+			state = State.HALF_OPEN;
+			trialsInFlight = 0;
+			trialSuccesses = 0;
+			logger.info("Keycloak circuit breaker is half open, letting {} trial calls through.", halfOpenCalls);
+		}
+		return state;
+	}
+
+	// Percentage of failed calls in the window, or -1 until the window has enough calls
+	synchronized float failureRate() {
+		return recorded < minimumCalls ? -1 : failures * 100f / recorded;
+	}
+
+	// Takes a bulkhead permit and asks the breaker; returns whether the call is a half-open trial
+	private boolean enter(String operation) {
+		if (!bulkhead.tryAcquire()) {
+			metrics.increment("keycloak_resilience_rejections", "operation", operation, "reason", "bulkhead_full");
+			throw new KeycloakUnavailableException(
+					"Too many concurrent Keycloak calls, limit is " + maxConcurrentCalls);
+		}
+		synchronized (this) {
+			State current = state();
+			if (current == State.CLOSED) {
+				return false;
+			}
+			if (current == State.HALF_OPEN && trialsInFlight < halfOpenCalls) {
+				trialsInFlight++;
+				return true;
+			}
+		}
+		bulkhead.release();
+		metrics.increment("keycloak_resilience_rejections", "operation", operation, "reason", "circuit_open");
+		throw new KeycloakUnavailableException("Keycloak circuit breaker is open, not calling " + operation);
+	}
+
+	// Feeds the outcome to the breaker; calls that were abandoned before finishing are not counted
+	private synchronized void complete(boolean trial, Throwable error, boolean counted) {
+		boolean failed = error != null && isOutage(error);
+		if (trial) {
+			if (state != State.HALF_OPEN) {
+				return;
+			}
+			trialsInFlight--;
+			if (!counted) {
+				return;
+			}
+			if (failed) {
+				open("a trial call failed");
+			} else if (++trialSuccesses >= halfOpenCalls) {
+				state = State.CLOSED;
+				recorded = 0;
+				next = 0;
+				failures = 0;
+				logger.info("Keycloak circuit breaker closed after {} successful trial calls.", trialSuccesses);
+			}
+			return;
+		}
+		if (state != State.CLOSED || !counted) {
+			return;
+		}
+		if (recorded == outcomes.length) {
+			if (outcomes[next]) {
+				failures--;
+			}
+		} else {
+			recorded++;
+		}
+		outcomes[next] = failed;
+		if (failed) {
+			failures++;
+		}
+		next = (next + 1) % outcomes.length;
+		if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+			open(failures + " of the last " + recorded + " calls failed");
+		}
+	}
+
+	private void open(String reason) {
+		state = State.OPEN;
+		openUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+		logger.warn("Keycloak circuit breaker opened for {} ms, {}.", openDurationMs, reason);
+	}
+
+	private KeycloakUnavailableException timedOut(String operation, long timeoutMs, Throwable cause) {
+		metrics.increment("keycloak_resilience_rejections", "operation", operation, "reason", "timeout");
+		logger.warn("Keycloak call {} timed out after {} ms.", operation, timeoutMs);
+		return new KeycloakUnavailableException(
+				"Keycloak did not answer " + operation + " within " + timeoutMs + " ms", cause);
+	}
+
+	private long timeoutMs(String operation) {
+		return timeouts.computeIfAbsent(operation, key -> environment
+				.getProperty("keycloak.resilience.timeoutMs." + key, Long.class, defaultTimeoutMs));
+	}
+}
@@ -0,0 +1,16 @@
+package com.app.keycloak.service;
+
+import com.app.keycloak.entity.UserDto;
+
+/**
+ * The fields we use from a Keycloak user representation. The {@code city}
+ * and {@code phno} attributes are multi-valued in Keycloak; only the first
+ * value is kept, and a missing or empty attribute is null.
+ */
+record KeycloakUser(String id, String username, String firstName, String lastName, String email, String city,
+		String phno) {
+
+	UserDto toUserDto() {
+		return new UserDto(username, firstName, lastName, email, phno, city);
+	}
+}
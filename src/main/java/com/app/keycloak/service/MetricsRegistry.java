@@ -0,0 +1,181 @@
+package com.app.keycloak.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Timers, counters and gauges rendered in the Prometheus text format.
+ * <p>
+ * Metric and label names follow what Micrometer's Prometheus registry would
+ * produce, so dashboards keep working if the application moves to Actuator.
+ * Timers are histograms in seconds with fixed buckets, which is enough for
+ * {@code histogram_quantile} to give p50/p99 per label set; their {@code _max}
+ * is the largest value since the previous scrape. Tags are passed as
+ * alternating names and values and must come from a small, fixed set.
+ */
+@Component
+public class MetricsRegistry {
+
+	private static final double[] BUCKETS = { 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+	private final ConcurrentMap<String, ConcurrentMap<String, Timer>> timers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> counters = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ConcurrentMap<String, Supplier<? extends Number>>> gauges = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ConcurrentMap<String, Supplier<? extends Number>>> functionCounters = new ConcurrentHashMap<>();
+
+	public void record(String name, long nanos, String... tags) {
+		timers.computeIfAbsent(name, key -> new ConcurrentHashMap<>())
+				.computeIfAbsent(labels(tags), key -> new Timer())
+				.record(nanos);
+	}
+
+	public void increment(String name, String... tags) {
+		counters.computeIfAbsent(name, key -> new ConcurrentHashMap<>())
+				.computeIfAbsent(labels(tags), key -> new LongAdder())
+				.increment();
+	}
+
+	// Sampled on every scrape; registering the same name and tags again replaces the supplier
+	public void gauge(String name, Supplier<? extends Number> value, String... tags) {
+		gauges.computeIfAbsent(name, key -> new ConcurrentHashMap<>()).put(labels(tags), value);
+	}
+
+	// A count kept elsewhere, such as cache statistics, exposed as a counter
+	public void functionCounter(String name, Supplier<? extends Number> value, String... tags) {
+		functionCounters.computeIfAbsent(name, key -> new ConcurrentHashMap<>()).put(labels(tags), value);
+	}
+
+	public String scrape() {
+		StringBuilder out = new StringBuilder(4096);
+		for (Map.Entry<String, ConcurrentMap<String, Timer>> metric : new TreeMap<>(timers).entrySet()) {
+			String name = metric.getKey() + "_seconds";
+			Map<String, Timer> series = new TreeMap<>(metric.getValue());
+			out.append("# TYPE ").append(name).append(" histogram\n");
+			series.forEach((labels, timer) -> timer.writeHistogram(out, name, labels));
+			out.append("# TYPE ").append(name).append("_max gauge\n");
+			series.forEach((labels, timer) -> sample(out, name + "_max", labels, "",
+					timer.maxNanos.getAndSet(0) / 1e9));
+		}
+		for (Map.Entry<String, ConcurrentMap<String, LongAdder>> metric : new TreeMap<>(counters).entrySet()) {
+			String name = metric.getKey() + "_total";
+			out.append("# TYPE ").append(name).append(" counter\n");
+			new TreeMap<>(metric.getValue()).forEach((labels, count) -> sample(out, name, labels, "", count.sum()));
+		}
+		writeFunctions(out, functionCounters, "_total", "counter");
+		writeFunctions(out, gauges, "", "gauge");
+		return out.toString();
+	}
+
+	private static void writeFunctions(StringBuilder out,
+			ConcurrentMap<String, ConcurrentMap<String, Supplier<? extends Number>>> metrics, String suffix,
+			String type) {
+		for (Map.Entry<String, ConcurrentMap<String, Supplier<? extends Number>>> metric : new TreeMap<>(metrics)
+				.entrySet()) {
+			String name = metric.getKey() + suffix;
+			out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+			new TreeMap<>(metric.getValue()).forEach((labels, supplier) -> {
+				Number value;
+				try {
+					value = supplier.get();
+				} catch (RuntimeException e) {
+					// A source that is not available yet, e.g. a pool before its first connection
+					value = null;
+				}
+				if (value != null) {
+					sample(out, name, labels, "", value.doubleValue());
+				}
+			});
+		}
+	}
+
+	private static void sample(StringBuilder out, String name, String labels, String extraLabel, double value) {
+		out.append(name);
+		if (!labels.isEmpty() || !extraLabel.isEmpty()) {
+			out.append('{').append(labels);
+			if (!labels.isEmpty() && !extraLabel.isEmpty()) {
+				out.append(',');
+			}
+			out.append(extraLabel).append('}');
+		}
+		out.append(' ');
+		if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+			out.append((long) value);
+		} else {
+			out.append(value);
+		}
+		out.append('\n');
+	}
+
+	// Renders tags as the label part of a sample, which also serves as the series key
+	static String labels(String... tags) {
+		if (tags.length % 2 != 0) {
+			throw new IllegalArgumentException("Tags must be name/value pairs");
+		}
+		StringBuilder labels = new StringBuilder();
+		for (int i = 0; i < tags.length; i += 2) {
+			if (i > 0) {
+				labels.append(',');
+			}
+			labels.append(tags[i]).append("=\"");
+			String value = tags[i + 1] == null ? "" : tags[i + 1];
+			for (int c = 0; c < value.length(); c++) {
+				char ch = value.charAt(c);
+				switch (ch) {
+				case '\\' -> labels.append("\\\\");
+				case '"' -> labels.append("\\\"");
+				case '\n' -> labels.append("\\n");
+				default -> labels.append(ch);
+				}
+			}
+			labels.append('"');
+		}
+		return labels.toString();
+	}
+
+	private static final class Timer {
+
+		// Per bucket, not cumulative; summed up when scraped
+		private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		Timer() {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long nanos) {
+			count.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+			double seconds = nanos / 1e9;
+			for (int i = 0; i < BUCKETS.length; i++) {
+				if (seconds <= BUCKETS[i]) {
+					buckets[i].increment();
+					return;
+				}
+			}
+		}
+
+		void writeHistogram(StringBuilder out, String name, String labels) {
+			long cumulative = 0;
+			for (int i = 0; i < BUCKETS.length; i++) {
+				cumulative += buckets[i].sum();
+				sample(out, name + "_bucket", labels, "le=\"" + BUCKETS[i] + "\"", cumulative);
+			}
+			long total = count.sum();
+			sample(out, name + "_bucket", labels, "le=\"+Inf\"", total);
+			sample(out, name + "_count", labels, "", total);
+			sample(out, name + "_sum", labels, "", totalNanos.sum() / 1e9);
+		}
+	}
+}
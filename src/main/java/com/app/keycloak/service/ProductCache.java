@@ -0,0 +1,150 @@
+package com.app.keycloak.service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Bounded read-through cache of products by ID. Products change rarely and
+ * only through {@link ProductService}, which refreshes or drops entries on
+ * every write, so the TTL is only a safety net for changes made directly in
+ * the database. Products go in and come out as copies, so neither a managed
+ * entity nor a caller changing what it got back can alter a cached entry.
+ */
+@Component
+public class ProductCache {
+
+	private static final Logger logger = LogManager.getLogger(ProductCache.class);
+
+	@Value("${product.cache.enabled:true}")
+	private boolean enabled;
+
+	@Value("${product.cache.maxSize:10000}")
+	private long maxSize;
+
+	@Value("${product.cache.ttlMinutes:10}")
+	private long ttlMinutes;
+
+	@Value("${product.cache.warmupSize:1000}")
+	private int warmupSize;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	private Cache<Long, Product> cache;
+
+	@PostConstruct
+	void init() {
+		if (!enabled) {
+			logger.info("Product cache is disabled.");
+			return;
+		}
+		cache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+				.recordStats()
+				.build();
+		warmUp();
+	}
+
+	// Preloads the first products in one keyset query so the first requests after a restart do not all miss
+	private void warmUp() {
+		int count = (int) Math.min(warmupSize, maxSize);
+		if (count <= 0) {
+			return;
+		}
+		List<Product> products = productRepository.findPageAfter(0, Limit.of(count));
+		for (Product product : products) {
+			cache.put(product.getProductid(), snapshot(product));
+		}
+		logger.info("Product cache enabled with max size {} and TTL {}m, warmed up with {} products.", maxSize,
+				ttlMinutes, products.size());
+	}
+
+	public boolean isEnabled() {
+		return cache != null;
+	}
+
+	// Returns the cached product, calling the loader on a miss; missing products are not cached
+	public Product get(Long id, Function<Long, Product> loader) {
+		if (cache == null) {
+			return loader.apply(id);
+		}
+		return snapshot(cache.get(id, key -> snapshot(loader.apply(key))));
+	}
+
+	// Returns the cached products, loading every missing ID with one call to the bulk loader
+	public Map<Long, Product> getAll(Collection<Long> ids, Function<Set<Long>, Map<Long, Product>> bulkLoader) {
+		if (cache == null) {
+			return bulkLoader.apply(new LinkedHashSet<>(ids));
+		}
+		return snapshots(cache.getAll(ids, keys -> snapshots(bulkLoader.apply(new LinkedHashSet<>(keys)))));
+	}
+
+	public void put(Product product) {
+		if (cache != null) {
+			cache.put(product.getProductid(), snapshot(product));
+		}
+	}
+
+	public void invalidate(Long id) {
+		if (cache != null && id != null) {
+			cache.invalidate(id);
+		}
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", isEnabled());
+		if (cache != null) {
+			CacheStats cacheStats = cache.stats();
+			stats.put("size", cache.estimatedSize());
+			stats.put("hitCount", cacheStats.hitCount());
+			stats.put("missCount", cacheStats.missCount());
+			stats.put("hitRate", cacheStats.hitRate());
+			stats.put("evictionCount", cacheStats.evictionCount());
+		}
+		return stats;
+	}
+
+	private static Map<Long, Product> snapshots(Map<Long, Product> products) {
+		Map<Long, Product> copies = new LinkedHashMap<>(products.size() * 2);
+		products.forEach((id, product) -> copies.put(id, snapshot(product)));
+		return copies;
+	}
+
+	private static Product snapshot(Product product) {
+		if (product == null) {
+			return null;
+		}
+		Product copy = new Product();
+		copy.setProductid(product.getProductid());
+		copy.setProductname(product.getProductname());
+		copy.setPrice(product.getPrice());
+		copy.setQuantity(product.getQuantity());
+		copy.setCategory(product.getCategory());
+		copy.setSearchkeyword(product.getSearchkeyword());
+		copy.setVersion(product.getVersion());
+		return copy;
+	}
+}
@@ -0,0 +1,133 @@
+package com.app.keycloak.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Full catalog export that writes each row as it comes off the result set.
+ * Rows are streamed from MySQL, written, then detached, so neither the JDBC
+ * driver nor the persistence context holds on to more than the current row.
+ */
+@Service
+public class ProductExportService {
+
+	private static final Logger logger = LogManager.getLogger(ProductExportService.class);
+
+	private static final String CSV_HEADER = "productid,productname,price,quantity,category,searchkeyword";
+
+	private static final ObjectWriter NDJSON_WRITER = new ObjectMapper()
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+			.writerFor(Product.class)
+			.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+			.withRootValueSeparator("\n");
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	// Writes every product as CSV or NDJSON, optionally gzipped; the caller owns the output stream
+	@Transactional(readOnly = true)
+	public long export(OutputStream out, boolean csv, boolean gzip) throws IOException {
+		long start = System.nanoTime();
+		GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, 64 * 1024) : null;
+		OutputStream target = gzip ? gzipOut : out;
+		long count;
+		try (Stream<Product> products = productRepository.streamAll()) {
+			count = csv ? writeCsv(products.iterator(), target) : writeNdjson(products.iterator(), target);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		if (gzipOut != null) {
+			gzipOut.finish();
+		}
+		logger.info("Exported {} products as {} in {} ms.", count, csv ? "CSV" : "NDJSON",
+				(System.nanoTime() - start) / 1_000_000);
+		return count;
+	}
+
+	private long writeNdjson(Iterator<Product> products, OutputStream out) throws IOException {
+		long count = 0;
+		try (SequenceWriter sequence = NDJSON_WRITER.writeValues(out)) {
+			while (products.hasNext()) {
+				Product product = products.next();
+				sequence.write(product);
+				entityManager.detach(product);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private long writeCsv(Iterator<Product> products, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+		writer.write(CSV_HEADER);
+		writer.write("\r\n");
+		long count = 0;
+		while (products.hasNext()) {
+			Product product = products.next();
+			writer.write(Long.toString(product.getProductid()));
+			writer.write(',');
+			writeCsvField(writer, product.getProductname());
+			writer.write(',');
+			writer.write(Integer.toString(product.getPrice()));
+			writer.write(',');
+			writer.write(Integer.toString(product.getQuantity()));
+			writer.write(',');
+			writeCsvField(writer, product.getCategory());
+			writer.write(',');
+			writeCsvField(writer, product.getSearchkeyword());
+			writer.write("\r\n");
+			entityManager.detach(product);
+			count++;
+		}
+		// Flush rather than close: the servlet container owns the response stream
+		writer.flush();
+		return count;
+	}
+
+	// Quotes the field only when it contains a separator, quote or line break
+	static void writeCsvField(Writer writer, String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			writer.write(value);
+			return;
+		}
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+}
@@ -0,0 +1,188 @@
+package com.app.keycloak.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.app.keycloak.entity.CategoryFacet;
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.repository.ProductRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Per-category product counts and price statistics, kept up to date on every
+ * product write so a facet query only walks the categories.
+ * <p>
+ * Each category keeps a count of products per price, so removing the
+ * cheapest or dearest product still leaves the right min and max. The last
+ * known category and price of every product are remembered to undo its old
+ * contribution when it changes.
+ */
+@Component
+public class ProductFacets {
+
+	private static final Logger logger = LogManager.getLogger(ProductFacets.class);
+
+	@Value("${product.facets.enabled:true}")
+	private boolean enabled;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<String, CategoryStats> categories = new TreeMap<>();
+	private final Map<Long, Listing> listings = new HashMap<>();
+
+	@PostConstruct
+	void init() {
+		if (!enabled) {
+			logger.info("Product facets are disabled.");
+			return;
+		}
+		long start = System.nanoTime();
+		// Streamed and detached row by row, so startup does not hold the whole catalog in memory a second time
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			try (Stream<Product> products = productRepository.streamAll()) {
+				rebuild(products.peek(entityManager::detach));
+			}
+		});
+		logger.info("Product facets built for {} categories in {} ms.", categories.size(),
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void rebuild(Stream<Product> products) {
+		lock.writeLock().lock();
+		try {
+			categories.clear();
+			listings.clear();
+			products.forEach(this::add);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Records a new or changed product
+	public void put(Product product) {
+		lock.writeLock().lock();
+		try {
+			subtract(listings.remove(product.getProductid()));
+			add(product);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// For partial updates where only some fields are known; null keeps the current value
+	public void update(long productId, String category, Integer price) {
+		lock.writeLock().lock();
+		try {
+			Listing old = listings.remove(productId);
+			if (old == null) {
+				// Not seen before: it can only be counted if the update says where
+				if (category != null && price != null) {
+					add(productId, category, price);
+				}
+				return;
+			}
+			subtract(old);
+			add(productId, category != null ? category : old.category(), price != null ? price : old.price());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(long productId) {
+		lock.writeLock().lock();
+		try {
+			subtract(listings.remove(productId));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// One entry per category, in category order
+	public List<CategoryFacet> facets() {
+		lock.readLock().lock();
+		try {
+			List<CategoryFacet> facets = new ArrayList<>(categories.size());
+			categories.forEach((category, stats) -> facets.add(new CategoryFacet(category, stats.count,
+					stats.prices.firstKey(), stats.prices.lastKey(), (double) stats.priceSum / stats.count)));
+			return facets;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void add(Product product) {
+		add(product.getProductid(), product.getCategory(), product.getPrice());
+	}
+
+	private void add(long productId, String category, int price) {
+		if (category == null) {
+			// Not counted, but remembered so a later update that sets the category knows the price
+			listings.put(productId, new Listing(null, price));
+			return;
+		}
+		CategoryStats stats = categories.computeIfAbsent(category, CategoryStats::new);
+		stats.count++;
+		stats.priceSum += price;
+		stats.prices.merge(price, 1, Integer::sum);
+		// Listings share the category's string instead of holding one per product
+		listings.put(productId, new Listing(stats.category, price));
+	}
+
+	private void subtract(Listing listing) {
+		if (listing == null || listing.category() == null) {
+			return;
+		}
+		CategoryStats stats = categories.get(listing.category());
+		stats.count--;
+		stats.priceSum -= listing.price();
+		stats.prices.computeIfPresent(listing.price(), (price, count) -> count == 1 ? null : count - 1);
+		if (stats.count == 0) {
+			categories.remove(listing.category());
+		}
+	}
+
+	private record Listing(String category, int price) {
+	}
+
+	private static final class CategoryStats {
+
+		private final String category;
+		private long count;
+		private long priceSum;
+		private final TreeMap<Integer, Integer> prices = new TreeMap<>();
+
+		CategoryStats(String category) {
+			this.category = category;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.app.keycloak.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.app.keycloak.entity.Product;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Moves the product ID sequence past the IDs already in the table. Products
+ * used to get AUTO_INCREMENT IDs, and Hibernate creates the sequence table
+ * starting at 1, so without this the first pooled block would collide with
+ * existing rows. Runs after the schema update has created the table.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class ProductIdSequence {
+
+	private static final Logger logger = LogManager.getLogger(ProductIdSequence.class);
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@PostConstruct
+	void init() {
+		Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(productid), 0) FROM product", Long.class);
+		// The pooled optimizer treats the stored value as the top of the next block
+		long floor = maxId + Product.ID_ALLOCATION_SIZE;
+		int updated = jdbcTemplate.update("UPDATE product_seq SET next_val = ? WHERE next_val < ?", floor, floor);
+		if (updated > 0) {
+			logger.info("Moved product ID sequence to {} past existing product ID {}.", floor, maxId);
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package com.app.keycloak.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.entity.ProductImportError;
+import com.app.keycloak.entity.ProductImportReport;
+import com.app.keycloak.exceptions.CustomException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Bulk product import from a streamed CSV or NDJSON body. Rows are validated
+ * with the same rules as a single add and inserted in transactions of
+ * {@code product.import.batchSize} rows, which Hibernate sends as one JDBC
+ * batch. If a batch fails, its rows are retried one by one so only the
+ * offending rows are reported.
+ */
+@Service
+public class ProductImportService {
+
+	private static final Logger logger = LogManager.getLogger(ProductImportService.class);
+
+	static final List<String> CSV_COLUMNS = List.of("productname", "price", "quantity", "category", "searchkeyword");
+
+	@Value("${product.import.batchSize:500}")
+	private int batchSize;
+
+	@Value("${product.import.maxReportedErrors:1000}")
+	private int maxReportedErrors;
+
+	@Autowired
+	private ProductService productService;
+
+	@Autowired
+	private ProductSearchIndex searchIndex;
+
+	@Autowired
+	private ProductFacets productFacets;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	@PostConstruct
+	void init() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	public ProductImportReport importProducts(InputStream body, boolean csv) throws IOException {
+		logger.info("Starting product import from {} with batch size {}.", csv ? "CSV" : "NDJSON", batchSize);
+		Import run = new Import();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+		if (csv) {
+			readCsv(reader, run);
+		} else {
+			readNdjson(reader, run);
+		}
+		run.flush();
+
+		ProductImportReport report = new ProductImportReport(run.rows, run.imported, run.errors,
+				run.rows - run.imported > run.errors.size());
+		logger.info("Product import finished: {} rows, {} imported, {} failed.", report.getTotal(),
+				report.getImported(), report.getFailed());
+		return report;
+	}
+
+	private void readNdjson(BufferedReader reader, Import run) throws IOException {
+		ObjectReader productReader = objectMapper.readerFor(Product.class);
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isBlank()) {
+				continue;
+			}
+			long row = ++run.rows;
+			try {
+				run.add(row, productReader.readValue(line));
+			} catch (JsonProcessingException e) {
+				run.reject(row, "Invalid record: " + e.getOriginalMessage());
+			}
+		}
+	}
+
+	private void readCsv(BufferedReader reader, Import run) throws IOException {
+		CsvRecordReader records = new CsvRecordReader(reader);
+		List<String> header = records.next();
+		if (header == null) {
+			return;
+		}
+		Map<String, Integer> columns = new HashMap<>();
+		for (int i = 0; i < header.size(); i++) {
+			columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+		}
+		if (!columns.keySet().containsAll(CSV_COLUMNS)) {
+			throw new IOException("CSV header must name the columns " + CSV_COLUMNS);
+		}
+
+		List<String> fields;
+		while (true) {
+			try {
+				fields = records.next();
+			} catch (IOException e) {
+				// The rest of the input cannot be split into records reliably
+				run.reject(++run.rows, "Malformed input, remaining rows were not read: " + e.getMessage());
+				return;
+			}
+			if (fields == null) {
+				return;
+			}
+			if (fields.size() == 1 && fields.get(0).isBlank()) {
+				continue;
+			}
+			long row = ++run.rows;
+			if (fields.size() != header.size()) {
+				run.reject(row, "Expected " + header.size() + " fields but found " + fields.size());
+				continue;
+			}
+			try {
+				Product product = new Product();
+				product.setProductname(fields.get(columns.get("productname")).trim());
+				product.setPrice(Integer.parseInt(fields.get(columns.get("price")).trim()));
+				product.setQuantity(Integer.parseInt(fields.get(columns.get("quantity")).trim()));
+				product.setCategory(fields.get(columns.get("category")).trim());
+				product.setSearchkeyword(fields.get(columns.get("searchkeyword")).trim());
+				run.add(row, product);
+			} catch (NumberFormatException e) {
+				run.reject(row, "Price and quantity must be whole numbers");
+			}
+		}
+	}
+
+	private record PendingRow(long row, Product product) {
+	}
+
+	// State of one import: counts, reported errors and the rows waiting for the next batch
+	private final class Import {
+
+		private long rows;
+		private long imported;
+		private final List<ProductImportError> errors = new ArrayList<>();
+		private final List<PendingRow> pending = new ArrayList<>();
+
+		void add(long row, Product product) {
+			if (product == null) {
+				reject(row, "Empty record");
+				return;
+			}
+			try {
+				productService.validateNewProduct(product);
+			} catch (CustomException e) {
+				reject(row, e.getMessage());
+				return;
+			}
+			product.setProductid(0);
+			product.setVersion(null);
+			pending.add(new PendingRow(row, product));
+			if (pending.size() >= batchSize) {
+				flush();
+			}
+		}
+
+		void reject(long row, String message) {
+			if (errors.size() < maxReportedErrors) {
+				errors.add(new ProductImportError(row, message));
+			}
+		}
+
+		void flush() {
+			if (pending.isEmpty()) {
+				return;
+			}
+			try {
+				insert(pending);
+				imported += pending.size();
+			} catch (RuntimeException e) {
+				logger.warn("Import batch of {} rows failed, retrying row by row: {}", pending.size(),
+						NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+				for (PendingRow row : pending) {
+					// The failed attempt already assigned IDs that were never committed
+					row.product().setProductid(0);
+					row.product().setVersion(null);
+					try {
+						insert(List.of(row));
+						imported++;
+					} catch (RuntimeException rowError) {
+						reject(row.row(), NestedExceptionUtils.getMostSpecificCause(rowError).getMessage());
+					}
+				}
+			}
+			pending.clear();
+		}
+
+		private void insert(List<PendingRow> batch) {
+			transactionTemplate.executeWithoutResult(status -> {
+				for (PendingRow row : batch) {
+					entityManager.persist(row.product());
+				}
+			});
+			if (searchIndex.isEnabled()) {
+				for (PendingRow row : batch) {
+					searchIndex.put(row.product());
+				}
+			}
+			if (productFacets.isEnabled()) {
+				for (PendingRow row : batch) {
+					productFacets.put(row.product());
+				}
+			}
+		}
+	}
+}
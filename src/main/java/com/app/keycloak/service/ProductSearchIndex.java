@@ -0,0 +1,390 @@
+package com.app.keycloak.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.repository.ProductRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory inverted index over product names and search keywords, so keyword
+ * search does not need a {@code LIKE %term%} table scan.
+ * <p>
+ * Text is split into lower-case tokens. Each token has a posting list of
+ * document slots, and every token is also filed under its trigrams so a
+ * substring query only checks the tokens that can contain it. A query matches
+ * a product when every term occurs in its name or keywords; results are
+ * ranked by how well the terms match (whole token, prefix, substring, name
+ * before keywords), and equal scores keep index order, which is product ID
+ * order after a rebuild with recently changed products last.
+ * <p>
+ * Posting lists are append-only. Deleting or updating a product frees its slot
+ * and readers skip freed slots; the index is rebuilt once freed slots outnumber
+ * live ones.
+ */
+@Component
+public class ProductSearchIndex {
+
+	private static final Logger logger = LogManager.getLogger(ProductSearchIndex.class);
+
+	private static final int GRAM = 3;
+	private static final int MIN_COMPACT_SLOTS = 1024;
+
+	@Value("${product.search.index.enabled:true}")
+	private boolean enabled;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final List<Doc> docs = new ArrayList<>();
+	private final Map<Long, Integer> slotById = new HashMap<>();
+	private final Map<String, Postings> postings = new HashMap<>();
+	private final Map<String, Set<String>> tokensByGram = new HashMap<>();
+	private int freeSlots;
+
+	@PostConstruct
+	void init() {
+		if (!enabled) {
+			logger.info("Product search index is disabled, searches use the database.");
+			return;
+		}
+		long start = System.nanoTime();
+		rebuild(productRepository.findAll());
+		logger.info("Product search index built with {} products and {} tokens in {} ms.", size(), tokenCount(),
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	// Replaces the whole index with the given products
+	public void rebuild(Collection<Product> products) {
+		lock.writeLock().lock();
+		try {
+			List<Product> sorted = new ArrayList<>(products);
+			sorted.sort(Comparator.comparingLong(Product::getProductid));
+			clear();
+			for (Product product : sorted) {
+				insert(product);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Adds the product, replacing any earlier version with the same ID
+	public void put(Product product) {
+		lock.writeLock().lock();
+		try {
+			free(product.getProductid());
+			insert(product);
+			compactIfNeeded();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Returns a copy of the indexed product, or null if it is not indexed
+	public Product get(long productId) {
+		lock.readLock().lock();
+		try {
+			Integer slot = slotById.get(productId);
+			return slot == null ? null : snapshot(docs.get(slot).product());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public void remove(long productId) {
+		lock.writeLock().lock();
+		try {
+			free(productId);
+			compactIfNeeded();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns copies of the products matching every term of the query, best
+	 * matches first. A blank query matches everything, like {@code LIKE '%%'}
+	 * did.
+	 */
+	public List<Product> search(String query) {
+		List<String> terms = tokenize(query);
+		lock.readLock().lock();
+		try {
+			if (terms.isEmpty()) {
+				List<Product> all = new ArrayList<>(slotById.size());
+				for (Doc doc : docs) {
+					if (doc != null) {
+						all.add(snapshot(doc.product()));
+					}
+				}
+				all.sort(Comparator.comparingLong(Product::getProductid));
+				return all;
+			}
+
+			// Only products posted under a matching token for every term can match
+			BitSet candidates = null;
+			for (String term : new LinkedHashSet<>(terms)) {
+				BitSet matches = new BitSet(docs.size());
+				for (String token : matchingTokens(term)) {
+					Postings list = postings.get(token);
+					for (int i = 0; i < list.size; i++) {
+						matches.set(list.slots[i]);
+					}
+				}
+				if (candidates == null) {
+					candidates = matches;
+				} else {
+					candidates.and(matches);
+				}
+				if (candidates.isEmpty()) {
+					return List.of();
+				}
+			}
+
+			// Scores are small, so hits are bucketed by score instead of sorted
+			List<List<Product>> byScore = new ArrayList<>();
+			for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+				Doc doc = docs.get(slot);
+				int score = doc == null ? 0 : score(terms, doc);
+				if (score > 0) {
+					while (byScore.size() <= score) {
+						byScore.add(new ArrayList<>());
+					}
+					byScore.get(score).add(doc.product());
+				}
+			}
+
+			List<Product> results = new ArrayList<>();
+			for (int score = byScore.size() - 1; score > 0; score--) {
+				for (Product product : byScore.get(score)) {
+					results.add(snapshot(product));
+				}
+			}
+			return results;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return slotById.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int tokenCount() {
+		lock.readLock().lock();
+		try {
+			return postings.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private List<String> matchingTokens(String term) {
+		Collection<String> vocabulary;
+		if (term.length() < GRAM) {
+			vocabulary = postings.keySet();
+		} else {
+			// Any token containing the term holds all of its trigrams; start from the rarest one
+			vocabulary = null;
+			for (int i = 0; i + GRAM <= term.length(); i++) {
+				Set<String> tokens = tokensByGram.get(term.substring(i, i + GRAM));
+				if (tokens == null) {
+					return List.of();
+				}
+				if (vocabulary == null || tokens.size() < vocabulary.size()) {
+					vocabulary = tokens;
+				}
+			}
+		}
+		List<String> matches = new ArrayList<>();
+		for (String token : vocabulary) {
+			if (token.contains(term)) {
+				matches.add(token);
+			}
+		}
+		return matches;
+	}
+
+	// Zero if any term is missing, otherwise the sum of each term's best match
+	private static int score(List<String> terms, Doc doc) {
+		int total = 0;
+		for (String term : terms) {
+			int best = Math.max(2 * termScore(term, doc.nameTokens()), termScore(term, doc.keywordTokens()));
+			if (best == 0) {
+				return 0;
+			}
+			total += best;
+		}
+		return total;
+	}
+
+	private static int termScore(String term, String[] tokens) {
+		int best = 0;
+		for (String token : tokens) {
+			if (token.equals(term)) {
+				return 3;
+			} else if (token.startsWith(term)) {
+				best = Math.max(best, 2);
+			} else if (token.contains(term)) {
+				best = Math.max(best, 1);
+			}
+		}
+		return best;
+	}
+
+	private void insert(Product product) {
+		int slot = docs.size();
+		Doc doc = new Doc(snapshot(product), index(tokenize(product.getProductname()), slot),
+				index(tokenize(product.getSearchkeyword()), slot));
+		docs.add(doc);
+		slotById.put(product.getProductid(), slot);
+	}
+
+	// Adds the slot to each token's postings and returns the tokens as the index's shared instances
+	private String[] index(List<String> tokens, int slot) {
+		String[] shared = new String[tokens.size()];
+		for (int i = 0; i < shared.length; i++) {
+			String token = tokens.get(i);
+			Postings list = postings.get(token);
+			if (list == null) {
+				list = new Postings(token);
+				postings.put(token, list);
+				for (String gram : grams(token)) {
+					tokensByGram.computeIfAbsent(gram, key -> new HashSet<>()).add(token);
+				}
+			}
+			// A token can repeat within a product; its slot is only posted once
+			if (list.size == 0 || list.slots[list.size - 1] != slot) {
+				list.add(slot);
+			}
+			shared[i] = list.token;
+		}
+		return shared;
+	}
+
+	private void free(long productId) {
+		Integer slot = slotById.remove(productId);
+		if (slot != null) {
+			docs.set(slot, null);
+			freeSlots++;
+		}
+	}
+
+	private void compactIfNeeded() {
+		if (freeSlots >= MIN_COMPACT_SLOTS && freeSlots > slotById.size()) {
+			List<Product> live = new ArrayList<>(slotById.size());
+			for (Doc doc : docs) {
+				if (doc != null) {
+					live.add(doc.product());
+				}
+			}
+			clear();
+			for (Product doc : live) {
+				insert(doc);
+			}
+			logger.info("Compacted product search index to {} products.", live.size());
+		}
+	}
+
+	private void clear() {
+		docs.clear();
+		slotById.clear();
+		postings.clear();
+		tokensByGram.clear();
+		freeSlots = 0;
+	}
+
+	// Lower-case runs of letters and digits
+	static List<String> tokenize(String text) {
+		if (text == null) {
+			return List.of();
+		}
+		List<String> tokens = new ArrayList<>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (wordChar && start < 0) {
+				start = i;
+			} else if (!wordChar && start >= 0) {
+				tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	private static Set<String> grams(String token) {
+		Set<String> grams = new HashSet<>();
+		for (int i = 0; i + GRAM <= token.length(); i++) {
+			grams.add(token.substring(i, i + GRAM));
+		}
+		return grams;
+	}
+
+	// The index keeps its own copy so later changes to a managed entity cannot skew it
+	private static Product snapshot(Product product) {
+		Product copy = new Product();
+		copy.setProductid(product.getProductid());
+		copy.setProductname(product.getProductname());
+		copy.setPrice(product.getPrice());
+		copy.setQuantity(product.getQuantity());
+		copy.setCategory(product.getCategory());
+		copy.setSearchkeyword(product.getSearchkeyword());
+		copy.setVersion(product.getVersion());
+		return copy;
+	}
+
+	private record Doc(Product product, String[] nameTokens, String[] keywordTokens) {
+	}
+
+	// Growable int array; a boxed list would cost several times the memory at a million rows
+	private static final class Postings {
+
+		private final String token;
+		private int[] slots = new int[2];
+		private int size;
+
+		Postings(String token) {
+			this.token = token;
+		}
+
+		void add(int slot) {
+			if (size == slots.length) {
+				slots = Arrays.copyOf(slots, size * 2);
+			}
+			slots[size++] = slot;
+		}
+	}
+}
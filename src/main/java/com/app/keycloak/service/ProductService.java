@@ -1,15 +1,33 @@
 package com.app.keycloak.service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import com.app.keycloak.entity.CategoryFacet;
 import com.app.keycloak.entity.Product;
+import com.app.keycloak.entity.ProductFilter;
+import com.app.keycloak.entity.ProductLookup;
+import com.app.keycloak.entity.ProductPage;
+import com.app.keycloak.entity.ProductPatch;
 import com.app.keycloak.exceptions.CustomException;
+import com.app.keycloak.exceptions.ProductNotFoundException;
+import com.app.keycloak.exceptions.VersionConflictException;
 import com.app.keycloak.repository.ProductRepository;
+import com.app.keycloak.repository.ProductSpecifications;
 
 @Service
 public class ProductService {
@@ -19,9 +37,57 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductSearchIndex searchIndex;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductFacets productFacets;
+
+    @Value("${product.page.defaultSize:50}")
+    private int defaultPageSize;
+
+    @Value("${product.page.maxSize:500}")
+    private int maxPageSize;
+
+    @Value("${product.batch.chunkSize:500}")
+    private int batchChunkSize;
+
+    @Value("${product.batch.maxIds:1000}")
+    private int maxBatchIds;
+
     public String addProducts(Product product) throws CustomException {
         logger.info("Attempting to add product: {}", product);
-        
+        validateNewProduct(product);
+
+        // A new product gets a generated ID and starts at version 0 whatever the client sent
+        product.setProductid(0);
+        product.setVersion(null);
+        productRepository.save(product);
+        productCache.put(product);
+        if (searchIndex.isEnabled()) {
+            searchIndex.put(product);
+        }
+        if (productFacets.isEnabled()) {
+            productFacets.put(product);
+        }
+        logger.info("Product added successfully: {}", product);
+        return "Product details are added successfully";
+    }
+
+    // Rules every new product must pass, shared by single adds and bulk imports
+    public void validateNewProduct(Product product) throws CustomException {
+        validateProduct(product);
+        if (product.getQuantity() == 0) {
+            logger.warn("Quantity must be greater than zero");
+            throw new CustomException("Quantity must be greater than zero");
+        }
+    }
+
+    // Rules for a complete product; an existing product may be replaced with no stock left
+    private void validateProduct(Product product) throws CustomException {
         if (product.getProductname() == null || product.getProductname().isEmpty()) {
             logger.warn("Product name is mandatory");
             throw new CustomException("Product name is mandatory");
@@ -38,30 +104,100 @@ public class ProductService {
             logger.warn("Price must be greater than zero");
             throw new CustomException("Price must be greater than zero");
         }
-        if (product.getQuantity() <= 0) {
-            logger.warn("Quantity must be greater than zero");
-            throw new CustomException("Quantity must be greater than zero");
+        if (product.getQuantity() < 0) {
+            logger.warn("Quantity must not be negative");
+            throw new CustomException("Quantity must not be negative");
         }
+    }
 
-        productRepository.save(product);
-        logger.info("Product added successfully: {}", product);
-        return "Product details are added successfully";
+    /**
+     * Returns one page of products in ID order, optionally filtered by category
+     * and price range. Each page seeks past the last ID of the previous one, so
+     * deep pages cost the same as the first. Without filters the page is a plain
+     * primary key range; with filters only the criteria that are set reach the
+     * query, as in {@link #filterProducts}.
+     */
+    public ProductPage getProducts(String cursor, Integer size, String category, Integer minPrice, Integer maxPrice)
+            throws CustomException {
+        int pageSize = size == null ? defaultPageSize : size;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new CustomException("Page size must be between 1 and " + maxPageSize);
+        }
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new CustomException("minPrice must not be greater than maxPrice");
+        }
+        long afterId = decodeCursor(cursor);
+        String categoryFilter = category == null || category.isBlank() ? null : category;
+        logger.info("Fetching products after ID {}, size: {}, category: {}, price: {}-{}", afterId, pageSize,
+                categoryFilter, minPrice, maxPrice);
+
+        // One extra row tells whether another page follows
+        List<Product> products;
+        if (categoryFilter == null && minPrice == null && maxPrice == null) {
+            products = productRepository.findPageAfter(afterId, Limit.of(pageSize + 1));
+        } else {
+            ProductFilter filter = new ProductFilter();
+            filter.setCategory(categoryFilter);
+            filter.setMinPrice(minPrice);
+            filter.setMaxPrice(maxPrice);
+            Specification<Product> spec = ProductSpecifications.matching(filter)
+                    .and(ProductSpecifications.after(ProductFilter.Sort.ID, 0, afterId));
+            products = productRepository.findBy(spec, query -> query
+                    .sortBy(ProductSpecifications.order(ProductFilter.Sort.ID)).limit(pageSize + 1).all());
+        }
+        String nextCursor = null;
+        if (products.size() > pageSize) {
+            products = products.subList(0, pageSize);
+            nextCursor = encodeCursor(products.get(pageSize - 1).getProductid());
+        }
+        logger.info("Fetched {} products, more available: {}", products.size(), nextCursor != null);
+        return new ProductPage(products, nextCursor);
     }
 
-    public List<Product> getProducts() throws CustomException {
-        logger.info("Fetching all products");
-        List<Product> products = productRepository.findAll();
-        if (products.isEmpty()) {
-            logger.warn("No products found");
-            throw new CustomException("No products are found");
+    /**
+     * Returns one page of products matching the filter in the requested order.
+     * Only the criteria that are set reach the query, and the cursor seeks on
+     * the sort key plus ID, so category and price filters run as a range scan on
+     * the (category, price) index without sorting the matches.
+     */
+    public ProductPage filterProducts(ProductFilter filter, String cursor, Integer size) throws CustomException {
+        int pageSize = size == null ? defaultPageSize : size;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new CustomException("Page size must be between 1 and " + maxPageSize);
         }
-        logger.info("Products retrieved successfully: {}", products);
-        return products;
+        if (filter.getMinPrice() != null && filter.getMaxPrice() != null
+                && filter.getMinPrice() > filter.getMaxPrice()) {
+            throw new CustomException("minPrice must not be greater than maxPrice");
+        }
+        if (filter.getCategory() != null && filter.getCategory().isBlank()) {
+            filter.setCategory(null);
+        }
+        logger.info("Filtering products, category: {}, price: {}-{}, in stock: {}, sort: {}, size: {}",
+                filter.getCategory(), filter.getMinPrice(), filter.getMaxPrice(), filter.isInStock(),
+                filter.getSort(), pageSize);
+
+        Specification<Product> spec = ProductSpecifications.matching(filter);
+        if (cursor != null && !cursor.isEmpty()) {
+            long[] last = decodeFilterCursor(filter.getSort(), cursor);
+            spec = spec.and(ProductSpecifications.after(filter.getSort(), (int) last[0], last[1]));
+        }
+        // One extra row tells whether another page follows
+        List<Product> products = productRepository.findBy(spec,
+                query -> query.sortBy(ProductSpecifications.order(filter.getSort())).limit(pageSize + 1).all());
+        String nextCursor = null;
+        if (products.size() > pageSize) {
+            products = products.subList(0, pageSize);
+            nextCursor = encodeFilterCursor(filter.getSort(), products.get(pageSize - 1));
+        }
+        logger.info("Filtered {} products, more available: {}", products.size(), nextCursor != null);
+        return new ProductPage(products, nextCursor);
     }
 
     public List<Product> searchProduct(String searchKeyword) throws CustomException {
         logger.info("Searching products with keyword: {}", searchKeyword);
-        List<Product> products = productRepository.searchProduct(searchKeyword);
+        List<Product> products = searchIndex.isEnabled()
+                ? searchIndex.search(searchKeyword)
+                : productRepository.searchProduct(searchKeyword);
         if (products.isEmpty()) {
             logger.warn("No products found for keyword: {}", searchKeyword);
             throw new CustomException("No products are found with the given search keyword");
@@ -72,43 +208,215 @@ public class ProductService {
 
     public Product getProductById(Long id) throws CustomException {
         logger.info("Fetching product with ID: {}", id);
-        return productRepository.findById(id).orElseThrow(() -> {
+        Product product = productCache.get(id, key -> productRepository.findById(key).orElse(null));
+        if (product == null) {
             logger.warn("Product not found with ID: {}", id);
-            return new CustomException("Product not found");
-        });
+            throw new CustomException("Product not found");
+        }
+        return product;
     }
 
+    /**
+     * Looks up many products at once: cached products first, then the rest in
+     * chunked {@code IN} queries. Products come back in request order and
+     * unknown IDs are reported instead of failing the lookup.
+     */
+    public ProductLookup getProductsByIds(List<Long> ids) throws CustomException {
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        distinctIds.remove(null);
+        if (distinctIds.size() > maxBatchIds) {
+            throw new CustomException("At most " + maxBatchIds + " product IDs can be requested at once");
+        }
+        logger.info("Fetching {} products by ID", distinctIds.size());
+
+        Map<Long, Product> found = productCache.getAll(distinctIds, this::loadProducts);
+        List<Product> products = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : distinctIds) {
+            Product product = found.get(id);
+            if (product != null) {
+                products.add(product);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            logger.warn("Products not found for IDs: {}", missingIds);
+        }
+        return new ProductLookup(products, missingIds);
+    }
+
+    private Map<Long, Product> loadProducts(Set<Long> ids) {
+        Map<Long, Product> products = new HashMap<>();
+        List<Long> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += batchChunkSize) {
+            List<Long> chunk = idList.subList(from, Math.min(from + batchChunkSize, idList.size()));
+            for (Product product : productRepository.findAllById(chunk)) {
+                products.put(product.getProductid(), product);
+            }
+        }
+        return products;
+    }
+
+    // Full update: the body must be a complete product, as for an add but possibly out of stock, and every
+    // column is replaced, conditionally on the version if the client sent one
     public void updateProduct(Product updatedProduct, Long id) throws CustomException {
-        logger.info("Updating product with ID: {}", id);
-        Product existingProduct = getProductById(id); // Ensures product exists or throws exception
-        productRepository.updateProduct(
-            updatedProduct.getProductname(),
-            updatedProduct.getPrice(),
-            updatedProduct.getQuantity(),
-            updatedProduct.getCategory(),
-            updatedProduct.getSearchkeyword(),
-            id
-        );
+        validateProduct(updatedProduct);
+        ProductPatch patch = new ProductPatch();
+        patch.setVersion(updatedProduct.getVersion());
+        patch.setProductname(updatedProduct.getProductname());
+        patch.setPrice(updatedProduct.getPrice());
+        patch.setQuantity(updatedProduct.getQuantity());
+        patch.setCategory(updatedProduct.getCategory());
+        patch.setSearchkeyword(updatedProduct.getSearchkeyword());
+        patchProduct(patch, id);
+    }
+
+    /**
+     * Applies the non-null fields of the patch in a single conditional UPDATE.
+     * Only when no row was updated is the product looked up again, to tell a
+     * missing product from a version conflict.
+     */
+    public void patchProduct(ProductPatch patch, Long id) throws CustomException {
+        logger.info("Updating product with ID: {}, expected version: {}", id, patch.getVersion());
+        validatePatch(patch);
+        int updated = productRepository.updateProduct(id, patch.getVersion(), patch.getProductname(),
+                patch.getPrice(), patch.getQuantity(), patch.getCategory(), patch.getSearchkeyword());
+        if (updated == 0) {
+            if (!productRepository.existsById(id)) {
+                logger.warn("Product not found with ID: {}", id);
+                throw new ProductNotFoundException("Product not found");
+            }
+            logger.warn("Product {} was changed since version {}", id, patch.getVersion());
+            throw new VersionConflictException("Product was modified by someone else, reload it and retry");
+        }
+
+        productCache.invalidate(id);
+        Product indexed = searchIndex.isEnabled() ? searchIndex.get(id) : null;
+        if (indexed != null) {
+            applyPatch(indexed, patch);
+            searchIndex.put(indexed);
+        }
+        if (productFacets.isEnabled()) {
+            productFacets.update(id, patch.getCategory(), patch.getPrice());
+        }
         logger.info("Product updated successfully with ID: {}", id);
     }
 
-    public void deleteProduct(Product existingProduct) throws CustomException {
-        logger.info("Deleting product: {}", existingProduct);
-        if (existingProduct == null) {
-            logger.warn("Attempted to delete a null product");
-            throw new CustomException("Product cannot be null");
+    private static void validatePatch(ProductPatch patch) throws CustomException {
+        // Otherwise the UPDATE would only bump the version
+        if (patch.getProductname() == null && patch.getPrice() == null && patch.getQuantity() == null
+                && patch.getCategory() == null && patch.getSearchkeyword() == null) {
+            throw new CustomException("Patch must set at least one field");
+        }
+        if (patch.getProductname() != null && patch.getProductname().isEmpty()) {
+            throw new CustomException("Product name must not be empty");
+        }
+        if (patch.getCategory() != null
+                && (patch.getCategory().isEmpty() || patch.getCategory().equalsIgnoreCase("select one"))) {
+            throw new CustomException("Please select a valid category type");
+        }
+        if (patch.getSearchkeyword() != null && patch.getSearchkeyword().isEmpty()) {
+            throw new CustomException("Search keyword must not be empty");
+        }
+        if (patch.getPrice() != null && patch.getPrice() <= 0) {
+            throw new CustomException("Price must be greater than zero");
+        }
+        if (patch.getQuantity() != null && patch.getQuantity() < 0) {
+            throw new CustomException("Quantity must not be negative");
         }
-        productRepository.delete(existingProduct);
-        logger.info("Product deleted successfully: {}", existingProduct);
     }
 
-    public Product getProductById(Object id) throws CustomException {
-        logger.info("Fetching product details by object ID: {}", id);
-        Product product = productRepository.getProductDetails(id);
-        if (product == null) {
-            logger.warn("No product found for ID: {}", id);
-            throw new CustomException("Product not found");
+    // Mirrors the UPDATE statement on an in-memory copy
+    private static void applyPatch(Product product, ProductPatch patch) {
+        if (patch.getProductname() != null) {
+            product.setProductname(patch.getProductname());
         }
-        return product;
+        if (patch.getPrice() != null) {
+            product.setPrice(patch.getPrice());
+        }
+        if (patch.getQuantity() != null) {
+            product.setQuantity(patch.getQuantity());
+        }
+        if (patch.getCategory() != null) {
+            product.setCategory(patch.getCategory());
+        }
+        if (patch.getSearchkeyword() != null) {
+            product.setSearchkeyword(patch.getSearchkeyword());
+        }
+        if (product.getVersion() != null) {
+            product.setVersion(product.getVersion() + 1);
+        }
+    }
+
+    // Deletes by ID, so a stale cached copy can never fail the delete with a version conflict
+    public void deleteProduct(Long id) throws CustomException {
+        logger.info("Deleting product with ID: {}", id);
+        if (productRepository.deleteProductById(id) == 0) {
+            logger.warn("Product not found with ID: {}", id);
+            throw new ProductNotFoundException("Product not found");
+        }
+        productCache.invalidate(id);
+        if (searchIndex.isEnabled()) {
+            searchIndex.remove(id);
+        }
+        if (productFacets.isEnabled()) {
+            productFacets.remove(id);
+        }
+        logger.info("Product deleted successfully with ID: {}", id);
+    }
+
+    // Cursors are opaque to clients so the paging key can change without breaking them
+    static String encodeCursor(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("id:" + lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static long decodeCursor(String cursor) throws CustomException {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (value.startsWith("id:")) {
+                return Long.parseLong(value.substring(3));
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below
+        }
+        throw new CustomException("Invalid cursor");
+    }
+
+    // Price-ordered pages also need the last price to seek from
+    static String encodeFilterCursor(ProductFilter.Sort sort, Product last) {
+        if (sort == ProductFilter.Sort.ID) {
+            return encodeCursor(last.getProductid());
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                ("price:" + last.getPrice() + ":" + last.getProductid()).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Returns {price, id}; a cursor from a listing in another order is rejected
+    static long[] decodeFilterCursor(ProductFilter.Sort sort, String cursor) throws CustomException {
+        if (sort == ProductFilter.Sort.ID) {
+            return new long[] { 0, decodeCursor(cursor) };
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":");
+            if (parts.length == 3 && parts[0].equals("price")) {
+                return new long[] { Integer.parseInt(parts[1]), Long.parseLong(parts[2]) };
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below
+        }
+        throw new CustomException("Invalid cursor");
+    }
+
+    public List<CategoryFacet> getFacets() {
+        return productFacets.isEnabled() ? productFacets.facets() : productRepository.findCategoryFacets();
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return productCache.stats();
     }
 }
@@ -0,0 +1,308 @@
+package com.app.keycloak.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.app.keycloak.entity.TokenResponse;
+import com.app.keycloak.entity.UserDto;
+import com.app.keycloak.exceptions.KeycloakException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking counterpart of {@link UsersService} built on the shared
+ * Keycloak WebClient. It uses the same admin token, user cache and ID cache as
+ * the blocking client.
+ */
+@Service
+@ConditionalOnProperty(name = "keycloak.client.mode", havingValue = "reactive")
+public class ReactiveUserClient implements UserClient {
+
+	private static final Logger logger = LogManager.getLogger(ReactiveUserClient.class);
+
+	@Value("${baseUrl}")
+	private String baseUrl;
+
+	@Value("${clientId}")
+	private String clientId;
+
+	@Value("${clientSecret}")
+	private String clientSecret;
+
+	@Value("${realm}")
+	private String realm;
+
+	@Autowired
+	private WebClient keycloakWebClient;
+
+	@Autowired
+	private AdminTokenManager tokenManager;
+
+	@Autowired
+	private UserCache userCache;
+
+	@Autowired
+	private UserIdCache userIdCache;
+
+	@Autowired
+	private MetricsRegistry metrics;
+
+	@Autowired
+	private KeycloakGuard keycloakGuard;
+
+	// Concurrent identical lookups share a single Keycloak call, as in UsersService
+	private final RequestCoalescer<String, List<UserDto>> userInfoCalls = new RequestCoalescer<>();
+	private final RequestCoalescer<String, List<UserDto>> userPageCalls = new RequestCoalescer<>();
+
+	@Override
+	public Map<String, Object> getCoalescingStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("getUserInfo", userInfoCalls.stats());
+		stats.put("getUsers", userPageCalls.stats());
+		return stats;
+	}
+
+	@Override
+	public Flux<UserDto> getUsers(int first, int max) {
+		return userPageCalls.executeAsync(first + ":" + max, () -> fetchUserPage(first, max))
+				.flatMapIterable(users -> users);
+	}
+
+	private Mono<List<UserDto>> fetchUserPage(int first, int max) {
+		logger.info("Fetching users from Keycloak, first: {}, max: {}.", first, max);
+		return callAdminApi("getUsers", HttpMethod.GET, null, "/users?first={first}&max={max}", first, max)
+				.map(response -> parseUsers(response.getBody()))
+				.onErrorMap(e -> keycloakError("Error fetching users from Keycloak", e));
+	}
+
+	@Override
+	public Mono<List<UserDto>> getUserInfo(String username) {
+		return Mono.defer(() -> {
+			List<UserDto> cached = userCache.getIfPresent(username);
+			if (cached != null) {
+				return Mono.just(cached);
+			}
+			return userInfoCalls.executeAsync(username.toLowerCase(Locale.ROOT), () -> fetchUserInfo(username));
+		}).onErrorResume(KeycloakGuard::isOutage, e -> {
+					// While Keycloak is down an old answer is better than none
+			List<UserDto> stale = userCache.getStale(username);
+			if (stale == null) {
+				return Mono.error(e);
+			}
+			logger.warn("Keycloak is unavailable, serving a stale user lookup for {}: {}", username,
+					e.getMessage());
+			metrics.increment("keycloak_stale_responses", "operation", "getUserInfo");
+			return Mono.just(stale);
+		});
+	}
+
+	private Mono<List<UserDto>> fetchUserInfo(String username) {
+		logger.info("Fetching user info for username: {}", username);
+		return callAdminApi("getUserInfo", HttpMethod.GET, null, "/users?username={username}", username)
+				.map(response -> parseUsers(response.getBody()))
+				.doOnNext(users -> userCache.put(username, users))
+				.onErrorMap(e -> keycloakError("Error fetching user info", e));
+	}
+
+	@Override
+	public Mono<String> addUser(UserDto user) {
+		logger.info("Adding new user to Keycloak: {}", user.getUsername());
+		return Mono.fromCallable(() -> KeycloakCodec.writeUser(user))
+				.flatMap(body -> callAdminApi("addUser", HttpMethod.POST, body, "/users"))
+				.map(response -> {
+					logger.info("User {} created successfully.", user.getUsername());
+					userCache.invalidate(user.getUsername());
+					userIdCache.putFromLocation(user.getUsername(), response.getHeaders().getLocation());
+					return "User created successfully";
+				})
+				.onErrorMap(e -> keycloakError("Error creating user", e));
+	}
+
+	@Override
+	public Mono<Boolean> deleteUser(String username) {
+		Mono<Boolean> viaSearch = Mono.defer(() -> findUserId(username)
+				.flatMap(userId -> deleteUserById(username, userId))
+				.defaultIfEmpty(false));
+
+		String knownId = userIdCache.get(username);
+		Mono<Boolean> delete = viaSearch;
+		if (knownId != null) {
+			delete = deleteUserById(username, knownId)
+					.onErrorResume(WebClientResponseException.NotFound.class, e -> {
+						// The user was removed elsewhere, so the ID has to be looked up again
+						logger.warn("Known ID {} for username {} is stale, searching again.", knownId, username);
+						userIdCache.invalidate(username);
+						return viaSearch;
+					});
+		}
+		return delete.onErrorMap(e -> keycloakError("Error when deleting the user", e));
+	}
+
+	@Override
+	public Mono<TokenResponse> loginValidation(String username, String password) {
+		logger.info("Requesting user token from Keycloak");
+		MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
+		map.add("grant_type", "password");
+		map.add("username", username);
+		map.add("password", password);
+
+		return requestUserToken("login", map);
+	}
+
+	@Override
+	public Mono<TokenResponse> refreshToken(String refreshToken) {
+		logger.info("Refreshing user token with Keycloak");
+		MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
+		map.add("grant_type", "refresh_token");
+		map.add("refresh_token", refreshToken);
+
+		return requestUserToken("refreshToken", map);
+	}
+
+	private Mono<TokenResponse> requestUserToken(String operation, MultiValueMap<String, String> map) {
+		map.add("client_id", clientId);
+		map.add("client_secret", clientSecret);
+
+		return guarded(operation, HttpMethod.POST, keycloakWebClient.post()
+				.uri(baseUrl + "/realms/" + realm + "/protocol/openid-connect/token")
+				.contentType(MediaType.APPLICATION_FORM_URLENCODED)
+				.body(BodyInserters.fromFormData(map))
+				.retrieve()
+				.toEntity(String.class))
+				.map(ResponseEntity::getBody)
+				.map(body -> decode(() -> KeycloakCodec.readTokens(body)))
+				.doOnNext(tokens -> logger.info("User token successfully retrieved."))
+				.onErrorMap(e -> keycloakError("Error getting when generating token", e));
+	}
+
+	private Mono<String> findUserId(String username) {
+		return callAdminApi("findUserId", HttpMethod.GET, null, "/users?exact=true&username={username}", username)
+				.flatMap(response -> {
+					for (KeycloakUser user : decode(() -> KeycloakCodec.readUsers(response.getBody()))) {
+						userIdCache.put(user.username(), user.id());
+						if (username.equalsIgnoreCase(user.username()) && user.id() != null) {
+							return Mono.just(user.id());
+						}
+					}
+					logger.warn("No user found with username: {}", username);
+					return Mono.empty();
+				});
+	}
+
+	private Mono<Boolean> deleteUserById(String username, String userId) {
+		return callAdminApi("deleteUser", HttpMethod.DELETE, null, "/users/{id}", userId)
+				.map(response -> {
+					logger.info("User with username {} deleted successfully", username);
+					userCache.invalidate(username);
+					userIdCache.invalidate(username);
+					return true;
+				});
+	}
+
+	// Calls a realm admin API with the cached admin token, retrying once if the token is rejected
+	private Mono<ResponseEntity<String>> callAdminApi(String operation, HttpMethod method, String body, String path,
+			Object... uriVariables) {
+		String uri = baseUrl + "/admin/realms/" + realm + path;
+		return adminToken().flatMap(token -> exchange(operation, method, uri, uriVariables, body, token)
+				.onErrorResume(WebClientResponseException.Unauthorized.class, e -> {
+					logger.warn("Admin token rejected for endpoint {}, retrying with a fresh token.", uri);
+					tokenManager.invalidate(token);
+					return adminToken()
+							.flatMap(fresh -> exchange(operation, method, uri, uriVariables, body, fresh));
+				}));
+	}
+
+	private Mono<ResponseEntity<String>> exchange(String operation, HttpMethod method, String uri,
+			Object[] uriVariables, String body, String token) {
+		logger.info("Calling API at endpoint: {}", uri);
+		WebClient.RequestBodySpec request = keycloakWebClient.method(method)
+				.uri(uri, uriVariables)
+				.headers(headers -> headers.setBearerAuth(token));
+		if (body != null) {
+			return guarded(operation, method,
+					request.contentType(MediaType.APPLICATION_JSON).bodyValue(body).retrieve().toEntity(String.class));
+		}
+		return guarded(operation, method, request.retrieve().toEntity(String.class));
+	}
+
+	// Timed inside the guard, so rejected calls are not counted as requests
+	private Mono<ResponseEntity<String>> guarded(String operation, HttpMethod method,
+			Mono<ResponseEntity<String>> call) {
+		return keycloakGuard.call(operation, timed(operation, method, call));
+	}
+
+	// Same timer as the blocking client; the clock starts on subscription, when the request is sent
+	private Mono<ResponseEntity<String>> timed(String operation, HttpMethod method,
+			Mono<ResponseEntity<String>> call) {
+		return Mono.defer(() -> {
+			long start = System.nanoTime();
+			return call
+					.doOnSuccess(response -> metrics.record("keycloak_requests", System.nanoTime() - start,
+							"operation", operation, "method", method.name(), "status",
+							response == null ? "IO_ERROR" : String.valueOf(response.getStatusCode().value())))
+					.doOnError(e -> metrics.record("keycloak_requests", System.nanoTime() - start, "operation",
+							operation, "method", method.name(), "status",
+							e instanceof WebClientResponseException responseError
+									? String.valueOf(responseError.getStatusCode().value())
+									: "IO_ERROR"));
+		});
+	}
+
+	// The token is almost always cached; only a real fetch is moved off the event loop
+	private Mono<String> adminToken() {
+		return Mono.defer(() -> {
+			String token = tokenManager.peekToken();
+			if (token != null) {
+				return Mono.just(token);
+			}
+			return Mono.fromCallable(tokenManager::getToken).subscribeOn(Schedulers.boundedElastic());
+		});
+	}
+
+	private List<UserDto> parseUsers(String body) {
+		List<KeycloakUser> found = decode(() -> KeycloakCodec.readUsers(body));
+		List<UserDto> users = new ArrayList<>(found.size());
+		for (KeycloakUser user : found) {
+			userIdCache.put(user.username(), user.id());
+			users.add(user.toUserDto());
+		}
+		return List.copyOf(users);
+	}
+
+	private static <T> T decode(Callable<T> decoder) {
+		try {
+			return decoder.call();
+		} catch (Exception e) {
+			throw new KeycloakException("Unreadable response from Keycloak: " + e.getMessage(), e);
+		}
+	}
+
+	private static Throwable keycloakError(String message, Throwable e) {
+		if (e instanceof KeycloakException) {
+			return e;
+		}
+		logger.error("{}: {}", message, e.getMessage(), e);
+		return new KeycloakException(message + ": " + e.getMessage(), e);
+	}
+}
@@ -0,0 +1,98 @@
+package com.app.keycloak.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.app.keycloak.exceptions.KeycloakException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Single-flight execution of identical calls. While a call for a key is in
+ * flight, further callers for the same key wait for it and receive its result
+ * (or its exception) instead of issuing their own. Results are shared between
+ * callers, so they should be immutable. {@link #executeAsync} does the same
+ * for calls that return a {@link Mono}, without blocking any caller.
+ */
+public class RequestCoalescer<K, V> {
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder executed = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+
+	public V execute(K key, Supplier<V> call) {
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+		if (existing != null) {
+			coalesced.increment();
+			return await(existing);
+		}
+
+		executed.increment();
+		try {
+			V value = call.get();
+			future.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, future);
+		}
+	}
+
+	/**
+	 * Subscribes to the call once per key, on behalf of every subscriber that
+	 * arrives while it is in flight. A subscriber cancelling only stops waiting;
+	 * the call goes on for the others.
+	 */
+	public Mono<V> executeAsync(K key, Supplier<Mono<V>> call) {
+		return Mono.defer(() -> {
+			CompletableFuture<V> future = new CompletableFuture<>();
+			CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+			if (existing != null) {
+				coalesced.increment();
+				return Mono.fromFuture(existing, true);
+			}
+
+			executed.increment();
+			Mono.defer(call)
+					// Leaves the map before anyone sees the result, so later callers start a new call
+					.doOnEach(signal -> inFlight.remove(key, future))
+					.subscribe(future::complete, future::completeExceptionally, () -> future.complete(null));
+			return Mono.fromFuture(future, true);
+		});
+	}
+
+	private V await(CompletableFuture<V> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new KeycloakException("Coalesced call failed: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	public long getExecutedCount() {
+		return executed.sum();
+	}
+
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("executed", getExecutedCount());
+		stats.put("coalesced", getCoalescedCount());
+		stats.put("inFlight", inFlight.size());
+		return stats;
+	}
+}
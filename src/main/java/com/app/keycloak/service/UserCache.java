@@ -0,0 +1,152 @@
+package com.app.keycloak.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.app.keycloak.entity.UserDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Bounded, time-limited cache of Keycloak username lookups.
+ * <p>
+ * Keycloak's {@code ?username=} search matches on substrings, so a cached
+ * result for "bob" also covers "bob2". Writes for a username therefore drop
+ * every cached query that the username contains, not only the exact key.
+ * <p>
+ * Every result is also kept for much longer in a stale copy, which is only
+ * read when Keycloak is unavailable and the fresh entry has expired.
+ */
+@Component
+public class UserCache {
+
+	private static final Logger logger = LogManager.getLogger(UserCache.class);
+
+	@Value("${keycloak.userCache.enabled:true}")
+	private boolean enabled;
+
+	@Value("${keycloak.userCache.maxSize:1000}")
+	private long maxSize;
+
+	@Value("${keycloak.userCache.ttlSeconds:60}")
+	private long ttlSeconds;
+
+	@Value("${keycloak.userCache.staleTtlSeconds:3600}")
+	private long staleTtlSeconds;
+
+	private Cache<String, List<UserDto>> cache;
+	private Cache<String, List<UserDto>> stale;
+
+	@PostConstruct
+	void init() {
+		if (enabled) {
+			cache = Caffeine.newBuilder()
+					.maximumSize(maxSize)
+					.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+					.recordStats()
+					.build();
+			logger.info("User lookup cache enabled with max size {} and TTL {}s.", maxSize, ttlSeconds);
+			if (staleTtlSeconds > 0) {
+				stale = Caffeine.newBuilder()
+						.maximumSize(maxSize)
+						.expireAfterWrite(Duration.ofSeconds(staleTtlSeconds))
+						.build();
+			}
+		} else {
+			logger.info("User lookup cache is disabled.");
+		}
+	}
+
+	public boolean isEnabled() {
+		return cache != null;
+	}
+
+	// Returns the cached lookup for the username, calling the loader on a miss
+	public List<UserDto> get(String username, Function<String, List<UserDto>> loader) {
+		if (cache == null) {
+			return loader.apply(username);
+		}
+		return cache.get(key(username), key -> {
+			List<UserDto> users = List.copyOf(loader.apply(username));
+			keepStale(key, users);
+			return users;
+		});
+	}
+
+	// Non-loading variants for callers that fetch asynchronously
+	public List<UserDto> getIfPresent(String username) {
+		return cache == null ? null : cache.getIfPresent(key(username));
+	}
+
+	public void put(String username, List<UserDto> users) {
+		if (cache != null) {
+			List<UserDto> copy = List.copyOf(users);
+			cache.put(key(username), copy);
+			keepStale(key(username), copy);
+		}
+	}
+
+	// The last lookup result however old it is, for use while Keycloak cannot be asked
+	public List<UserDto> getStale(String username) {
+		return stale == null ? null : stale.getIfPresent(key(username));
+	}
+
+	private void keepStale(String key, List<UserDto> users) {
+		if (stale != null) {
+			stale.put(key, users);
+		}
+	}
+
+	// Drops every cached lookup whose result could include the given username
+	public void invalidate(String username) {
+		if (cache == null || username == null) {
+			return;
+		}
+		String changed = key(username);
+		cache.asMap().keySet().removeIf(changed::contains);
+		if (stale != null) {
+			stale.asMap().keySet().removeIf(changed::contains);
+		}
+	}
+
+	public void invalidateAll() {
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+		if (stale != null) {
+			stale.invalidateAll();
+		}
+	}
+
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("enabled", isEnabled());
+		if (cache != null) {
+			CacheStats cacheStats = cache.stats();
+			stats.put("size", cache.estimatedSize());
+			stats.put("hitCount", cacheStats.hitCount());
+			stats.put("missCount", cacheStats.missCount());
+			stats.put("hitRate", cacheStats.hitRate());
+			stats.put("evictionCount", cacheStats.evictionCount());
+			stats.put("staleSize", stale == null ? 0 : stale.estimatedSize());
+		}
+		return stats;
+	}
+
+	// Keycloak matches usernames case-insensitively, so the cache does too
+	private static String key(String username) {
+		return username.toLowerCase(Locale.ROOT);
+	}
+}
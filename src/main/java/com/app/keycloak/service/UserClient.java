@@ -0,0 +1,35 @@
+package com.app.keycloak.service;
+
+import java.util.List;
+import java.util.Map;
+
+import com.app.keycloak.entity.TokenResponse;
+import com.app.keycloak.entity.UserDto;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * User operations as exposed to the controllers. {@code keycloak.client.mode}
+ * picks the implementation: {@code blocking} (default) runs the
+ * {@link UsersService} calls on the request thread, {@code reactive} talks to
+ * Keycloak through a non-blocking WebClient so no thread waits on Keycloak.
+ */
+public interface UserClient {
+
+	Flux<UserDto> getUsers(int first, int max);
+
+	Mono<List<UserDto>> getUserInfo(String username);
+
+	Mono<String> addUser(UserDto user);
+
+	// Emits false when there is no user with exactly this username
+	Mono<Boolean> deleteUser(String username);
+
+	Mono<TokenResponse> loginValidation(String username, String password);
+
+	Mono<TokenResponse> refreshToken(String refreshToken);
+
+	// Executed and shared calls of the lookups that coalesce concurrent identical requests
+	Map<String, Object> getCoalescingStats();
+}
@@ -0,0 +1,70 @@
+package com.app.keycloak.service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Username to Keycloak user ID mapping, learned from earlier lookups and
+ * creates. A known ID lets a delete go straight to {@code /users/{id}}
+ * without searching first. Keycloak IDs never change for a user, so a stale
+ * entry only happens when the user was removed behind our back; callers drop
+ * it on a 404.
+ */
+@Component
+public class UserIdCache {
+
+	@Value("${keycloak.userIdCache.maxSize:10000}")
+	private long maxSize;
+
+	@Value("${keycloak.userIdCache.ttlMinutes:60}")
+	private long ttlMinutes;
+
+	private Cache<String, String> cache;
+
+	@PostConstruct
+	void init() {
+		cache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+				.recordStats()
+				.build();
+	}
+
+	public String get(String username) {
+		return username == null ? null : cache.getIfPresent(key(username));
+	}
+
+	public void put(String username, String userId) {
+		if (username != null && userId != null && !userId.isEmpty()) {
+			cache.put(key(username), userId);
+		}
+	}
+
+	// Learns the ID from the Location header Keycloak returns for a created user
+	public void putFromLocation(String username, URI location) {
+		if (location != null) {
+			String path = location.getPath();
+			put(username, path.substring(path.lastIndexOf('/') + 1));
+		}
+	}
+
+	public void invalidate(String username) {
+		if (username != null) {
+			cache.invalidate(key(username));
+		}
+	}
+
+	// Keycloak stores usernames in lower case
+	private static String key(String username) {
+		return username.toLowerCase(Locale.ROOT);
+	}
+}
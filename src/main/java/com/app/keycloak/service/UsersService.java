@@ -1,10 +1,15 @@
 package com.app.keycloak.service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -14,14 +19,14 @@ import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
+import com.app.keycloak.entity.TokenResponse;
 import com.app.keycloak.entity.UserDto;
 import com.app.keycloak.exceptions.KeycloakException;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
 @Service
 @Component
@@ -36,102 +41,129 @@ public class UsersService {
 	@Value("${clientSecret}")
 	private String clientSecret;
 
-	@Value("${granttype}")
-	private String grantType;
-
 	@Value("${realm}")
 	private String realm;
 
-	private String accessToken;
-	private static final Logger logger = LogManager.getLogger(UsersService.class);
-	private List<UserDto> users = new ArrayList<>();
+	@Value("${keycloak.users.streamPageSize:200}")
+	private int streamPageSize;
 
-	// Method to call an API
-	private static ResponseEntity<String> callApi(String endpoint, HttpEntity<?> httpEntity, HttpMethod httpMethod) {
-		RestTemplate restTemplate = new RestTemplate();
-		logger.info("Calling API at endpoint: {}", endpoint);
-		return restTemplate.exchange(endpoint, httpMethod, httpEntity, String.class);
-	}
+	@Autowired
+	private AdminTokenManager tokenManager;
 
-	// Method to get admin token
-	public String getAdminToken() {
-		logger.info("Requesting admin token from Keycloak");
-		String tokenUrl = baseUrl + "/realms/" + realm + "/protocol/openid-connect/token";
+	@Autowired
+	private RestTemplate keycloakRestTemplate;
 
-		MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
-		map.add("grant_type", grantType);
-		map.add("client_id", clientId);
-		map.add("client_secret", clientSecret);
+	@Autowired
+	private UserCache userCache;
 
-		HttpHeaders headers = new HttpHeaders();
-		headers.setContentType(org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED);
+	@Autowired
+	private UserIdCache userIdCache;
 
-		HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(map, headers);
+	@Autowired
+	private MetricsRegistry metrics;
 
+	@Autowired
+	private KeycloakGuard keycloakGuard;
+
+	private static final Logger logger = LogManager.getLogger(UsersService.class);
+
+	// Concurrent identical lookups share a single Keycloak call
+	private final RequestCoalescer<String, List<UserDto>> userInfoCalls = new RequestCoalescer<>();
+	private final RequestCoalescer<String, List<UserDto>> userPageCalls = new RequestCoalescer<>();
+
+	// Method to call an API through the shared, pooled Keycloak client, guarded and timed per operation
+	private ResponseEntity<String> callApi(String operation, String endpoint, HttpEntity<?> httpEntity,
+			HttpMethod httpMethod) {
+		logger.info("Calling API at endpoint: {}", endpoint);
+		return keycloakGuard.call(operation, () -> exchange(operation, endpoint, httpEntity, httpMethod));
+	}
+
+	private ResponseEntity<String> exchange(String operation, String endpoint, HttpEntity<?> httpEntity,
+			HttpMethod httpMethod) {
+		long start = System.nanoTime();
+		String status = "IO_ERROR";
 		try {
-			ResponseEntity<String> response = callApi(tokenUrl, request, HttpMethod.POST);
+			ResponseEntity<String> response = keycloakRestTemplate.exchange(endpoint, httpMethod, httpEntity,
+					String.class);
+			status = String.valueOf(response.getStatusCode().value());
+			return response;
+		} catch (RestClientResponseException e) {
+			status = String.valueOf(e.getStatusCode().value());
+			throw e;
+		} finally {
+			metrics.record("keycloak_requests", System.nanoTime() - start, "operation", operation, "method",
+					httpMethod.name(), "status", status);
+		}
+	}
 
-			if (response.getStatusCode().is2xxSuccessful()) {
-				ObjectMapper mapper = new ObjectMapper();
-				String accessToken = mapper.readTree(response.getBody()).get("access_token").asText();
-				logger.info("Admin token successfully retrieved.");
-				return accessToken;
-			} else {
-				logger.error("Failed to retrieve token. HTTP Status: {}", response.getStatusCode());
-				throw new KeycloakException("Failed to retrieve token. HTTP Status: " + response.getStatusCode());
-			}
-		} catch (Exception e) {
-			logger.error("Error while generating the token: {}", e.getMessage(), e);
-			throw new KeycloakException("Error getting admin token: " + e.getMessage(), e);
+	// Method to call an admin API with the cached admin token, retrying once if the token is rejected
+	private ResponseEntity<String> callAdminApi(String operation, String endpoint, HttpHeaders httpHeaders,
+			Object body, HttpMethod httpMethod) {
+		String token = tokenManager.getToken();
+		httpHeaders.setBearerAuth(token);
+		try {
+			return callApi(operation, endpoint, new HttpEntity<>(body, httpHeaders), httpMethod);
+		} catch (HttpClientErrorException.Unauthorized e) {
+			logger.warn("Admin token rejected for endpoint {}, retrying with a fresh token.", endpoint);
+			tokenManager.invalidate(token);
+			httpHeaders.setBearerAuth(tokenManager.getToken());
+			return callApi(operation, endpoint, new HttpEntity<>(body, httpHeaders), httpMethod);
 		}
 	}
 
-	// Method to check if token is expired or null
-	private boolean isTokenExpired() {
-		return accessToken == null || accessToken.isEmpty();
+	public Map<String, Object> getCoalescingStats() {
+		Map<String, Object> stats = new LinkedHashMap<>();
+		stats.put("getUserInfo", userInfoCalls.stats());
+		stats.put("getUsers", userPageCalls.stats());
+		return stats;
 	}
 
-	// Method to refresh token if expired
-	private void refreshTokenIfNeeded() {
-		if (isTokenExpired()) {
-			logger.warn("Access token is expired or null, refreshing token.");
-			accessToken = getAdminToken();
-		}
+	// Method to get admin token
+	public String getAdminToken() {
+		return tokenManager.getToken();
 	}
 
-	public List<UserDto> getUsers() {
-		logger.info("Fetching users from Keycloak.");
-		refreshTokenIfNeeded(); // Ensure token is valid
+	public List<UserDto> getUsers(int first, int max) {
+		logger.info("Fetching users from Keycloak, first: {}, max: {}.", first, max);
+		List<UserDto> users = userPageCalls.execute(first + ":" + max, () -> fetchUserPage(first, max));
+		logger.info("Successfully fetched {} users from Keycloak.", users.size());
+		return users;
+	}
 
-		String url = baseUrl + "/admin/realms/" + realm + "/users";
+	// Walks the whole realm page by page, so only one page is held in memory at a time
+	public long forEachUser(Consumer<UserDto> action) {
+		logger.info("Streaming all users from Keycloak in pages of {}.", streamPageSize);
+		long count = 0;
+		int first = 0;
+		while (true) {
+			List<UserDto> page = fetchUserPage(first, streamPageSize);
+			page.forEach(action);
+			count += page.size();
+			if (page.size() < streamPageSize) {
+				break;
+			}
+			first += page.size();
+		}
+		logger.info("Successfully streamed {} users from Keycloak.", count);
+		return count;
+	}
 
-		HttpHeaders httpHeaders = new HttpHeaders();
-		httpHeaders.setBearerAuth(accessToken);
+	private List<UserDto> fetchUserPage(int first, int max) {
+		String url = baseUrl + "/admin/realms/" + realm + "/users?first=" + first + "&max=" + max;
 
-		HttpEntity<String> httpEntity = new HttpEntity<>(httpHeaders);
+		HttpHeaders httpHeaders = new HttpHeaders();
 		try {
-			ResponseEntity<String> response = callApi(url, httpEntity, HttpMethod.GET);
+			ResponseEntity<String> response = callAdminApi("getUsers", url, httpHeaders, null, HttpMethod.GET);
 
 			if (response != null && response.getStatusCode().is2xxSuccessful()) {
-				users.clear();
-
-				ObjectMapper mapper = new ObjectMapper();
-				ArrayNode jsonArray = (ArrayNode) mapper.readTree(response.getBody());
-
-				for (int i = 0; i < jsonArray.size(); i++) {
-					ObjectNode userObj = (ObjectNode) jsonArray.get(i);
-					String username = userObj.get("username").asText();
-					String firstname = userObj.get("firstName").asText();
-					String lastname = userObj.get("lastName").asText();
-					String email = userObj.get("email").asText();
-					ObjectNode attributes = (ObjectNode) userObj.get("attributes");
-					String city = attributes.get("city").get(0).asText();
-					String phno = attributes.get("phno").get(0).asText();
-
-					users.add(new UserDto(username, firstname, lastname, email, phno, city));
-				}
+				List<KeycloakUser> found = KeycloakCodec.readUsers(response.getBody());
 
-				logger.info("Successfully fetched {} users from Keycloak.", users.size());
+				List<UserDto> users = new ArrayList<>(found.size());
+				for (KeycloakUser user : found) {
+					rememberUserId(user);
+					users.add(user.toUserDto());
+				}
+				return List.copyOf(users);
 			} else {
 				logger.error("Error while fetching users. HTTP Status: {}", response.getStatusCode());
 				throw new KeycloakException(
@@ -141,54 +173,25 @@ public class UsersService {
 			logger.error("Error while fetching users info: {}", e.getMessage(), e);
 			throw new KeycloakException("Error fetching users from Keycloak: " + e.getMessage(), e);
 		}
-		return users;
 	}
 
 	public String addUser(UserDto user) throws JsonProcessingException {
 		logger.info("Adding new user to Keycloak: {}", user.getUsername());
-		refreshTokenIfNeeded(); // Ensure token is valid
 
 		String url = baseUrl + "/admin/realms/" + realm + "/users";
-		ObjectMapper mapper = new ObjectMapper();
 
 		HttpHeaders httpHeaders = new HttpHeaders();
 		httpHeaders.setContentType(org.springframework.http.MediaType.APPLICATION_JSON);
-		httpHeaders.setBearerAuth(accessToken);
 
-		ObjectNode jsonBody = mapper.createObjectNode();
-		jsonBody.put("username", user.getUsername());
-		jsonBody.put("firstName", user.getFirstName());
-		jsonBody.put("lastName", user.getLastName());
-		jsonBody.put("email", user.getEmailid());
-		jsonBody.put("emailVerified", true);
-		jsonBody.put("enabled", true);
-
-		ArrayNode credentials = mapper.createArrayNode();
-		ObjectNode creds = mapper.createObjectNode();
-		creds.put("type", "password");
-		creds.put("value", user.getPassword());
-		creds.put("temporary", false);
-		credentials.add(creds);
-		jsonBody.set("credentials", credentials);
-
-		ObjectNode attributes = mapper.createObjectNode();
-		ArrayNode cityArray = mapper.createArrayNode();
-		cityArray.add(user.getCity());
-		attributes.set("city", cityArray);
-
-		ArrayNode phnoArray = mapper.createArrayNode();
-		phnoArray.add(user.getMobilenumber());
-		attributes.set("phno", phnoArray);
-
-		jsonBody.set("attributes", attributes);
-
-		HttpEntity<String> entity = new HttpEntity<>(mapper.writeValueAsString(jsonBody), httpHeaders);
+		String body = KeycloakCodec.writeUser(user);
 
 		try {
-			ResponseEntity<String> response = callApi(url, entity, HttpMethod.POST);
+			ResponseEntity<String> response = callAdminApi("addUser", url, httpHeaders, body, HttpMethod.POST);
 
 			if (response != null && response.getStatusCode().is2xxSuccessful()) {
 				logger.info("User {} created successfully.", user.getUsername());
+				userCache.invalidate(user.getUsername());
+				userIdCache.putFromLocation(user.getUsername(), response.getHeaders().getLocation());
 				return "User created successfully";
 			} else {
 				logger.error("Failed to create user {}. HTTP Status: {}", user.getUsername(), response.getStatusCode());
@@ -201,46 +204,38 @@ public class UsersService {
 	}
 
 	public List<UserDto> getUserInfo(String uname) {
+		try {
+			return userCache.get(uname,
+					key -> userInfoCalls.execute(key.toLowerCase(Locale.ROOT), () -> fetchUserInfo(key)));
+		} catch (KeycloakException e) {
+			// While Keycloak is down an old answer is better than none
+			List<UserDto> stale = KeycloakGuard.isOutage(e) ? userCache.getStale(uname) : null;
+			if (stale == null) {
+				throw e;
+			}
+			logger.warn("Keycloak is unavailable, serving a stale user lookup for {}: {}", uname, e.getMessage());
+			metrics.increment("keycloak_stale_responses", "operation", "getUserInfo");
+			return stale;
+		}
+	}
+
+	private List<UserDto> fetchUserInfo(String uname) {
 		logger.info("Fetching user info for username: {}", uname);
-		refreshTokenIfNeeded(); // Ensure token is valid
+		List<UserDto> users = new ArrayList<>();
 
 		String userUrl = baseUrl + "/admin/realms/" + realm + "/users?username=" + uname;
 
 		HttpHeaders httpHeaders = new HttpHeaders();
-		httpHeaders.setBearerAuth(accessToken);
-
-		HttpEntity<String> httpEntity = new HttpEntity<>(httpHeaders);
 
 		try {
-			ResponseEntity<String> response = callApi(userUrl, httpEntity, HttpMethod.GET);
+			ResponseEntity<String> response = callAdminApi("getUserInfo", userUrl, httpHeaders, null, HttpMethod.GET);
 
 			if (response != null && response.getStatusCode().is2xxSuccessful()) {
-				users.clear();
-				ObjectMapper mapper = new ObjectMapper();
-				ArrayNode jsonArray = (ArrayNode) mapper.readTree(response.getBody());
-				if (jsonArray.size() != 0) {
-					for (int i = 0; i < jsonArray.size(); i++) {
-						ObjectNode userObj = (ObjectNode) jsonArray.get(i);
-						String username = userObj.has("username") ? userObj.get("username").asText() : null;
-						String firstname = userObj.has("firstName") ? userObj.get("firstName").asText() : null;
-						String lastname = userObj.has("lastName") ? userObj.get("lastName").asText() : null;
-						String email = userObj.has("email") ? userObj.get("email").asText() : null;
-
-						// Handle attributes field
-						ObjectNode attributes = userObj.has("attributes") ? (ObjectNode) userObj.get("attributes")
-								: null;
-						String city = null;
-						String phno = null;
-
-						if (attributes != null) {
-							city = attributes.has("city") && attributes.get("city").isArray()
-									? attributes.get("city").get(0).asText()
-									: null;
-							phno = attributes.has("phno") && attributes.get("phno").isArray()
-									? attributes.get("phno").get(0).asText()
-									: null;
-						}
-						users.add(new UserDto(username, firstname, lastname, email, phno, city));
+				List<KeycloakUser> found = KeycloakCodec.readUsers(response.getBody());
+				if (!found.isEmpty()) {
+					for (KeycloakUser user : found) {
+						rememberUserId(user);
+						users.add(user.toUserDto());
 					}
 
 					logger.info("Successfully fetched user info for username: {}", uname);
@@ -254,75 +249,69 @@ public class UsersService {
 			logger.error("Error fetching user info for username {}: {}", uname, e.getMessage(), e);
 			throw new KeycloakException("Error fetching user info: " + e.getMessage(), e);
 		}
-		return users;
+		return List.copyOf(users);
 	}
 
 	public Object deleteUser(String uname) {
+		if (!deleteUserIfPresent(uname)) {
+			return "User not found"; // You can return a message indicating the user was not found
+		}
+		return null; // Return null or any appropriate response as needed
+	}
+
+	// Deletes the user with exactly this username, returning false if there is no such user
+	public boolean deleteUserIfPresent(String uname) {
+		String userId = userIdCache.get(uname);
+		if (userId != null) {
+			logger.info("Using known ID {} for username: {}", userId, uname);
+			try {
+				deleteUserById(uname, userId);
+				return true;
+			} catch (KeycloakException e) {
+				if (!(e.getCause() instanceof HttpClientErrorException.NotFound)) {
+					throw e;
+				}
+				// The user was removed elsewhere, so the ID has to be looked up again
+				logger.warn("Known ID {} for username {} is stale, searching again.", userId, uname);
+				userIdCache.invalidate(uname);
+			}
+		}
+
+		userId = findUserId(uname);
+		if (userId == null) {
+			logger.warn("No user found with username: {}", uname);
+			return false;
+		}
+		deleteUserById(uname, userId);
+		return true;
+	}
+
+	private String findUserId(String uname) {
 		logger.info("Fetching user info for username: {}", uname);
-		String userId = null;
-		refreshTokenIfNeeded(); // Ensure token is valid
 
-		// Construct the URL to fetch user info based on username
-		String userUrl = baseUrl + "/admin/realms/" + realm + "/users?username=" + uname;
+		// Construct the URL to fetch user info based on username, matching it exactly
+		String userUrl = baseUrl + "/admin/realms/" + realm + "/users?exact=true&username=" + uname;
 
-		// Set headers with Bearer token
+		// Bearer token is added by callAdminApi
 		HttpHeaders httpHeaders = new HttpHeaders();
-		httpHeaders.setBearerAuth(accessToken);
-
-		HttpEntity<String> httpEntity = new HttpEntity<>(httpHeaders);
 
 		try {
 			// Make the GET request to fetch user info
-			ResponseEntity<String> response = callApi(userUrl, httpEntity, HttpMethod.GET);
+			ResponseEntity<String> response = callAdminApi("findUserId", userUrl, httpHeaders, null, HttpMethod.GET);
 
 			if (response != null && response.getStatusCode().is2xxSuccessful()) {
 				// Parse the response body to extract the user ID
-				ObjectMapper mapper = new ObjectMapper();
-				ArrayNode jsonArray = (ArrayNode) mapper.readTree(response.getBody());
-
-				boolean userFound = false; // Flag to check if user is found
-
-				for (int i = 0; i < jsonArray.size(); i++) {
-					ObjectNode userObj = (ObjectNode) jsonArray.get(i);
-					String username = userObj.get("username").asText();
+				for (KeycloakUser user : KeycloakCodec.readUsers(response.getBody())) {
+					rememberUserId(user);
 
 					// Check if the username matches
-					if (uname.equals(username)) {
-						userId = userObj.get("id").asText();
+					if (uname.equalsIgnoreCase(user.username()) && user.id() != null) {
+						String userId = user.id();
 						logger.info("Found user with username: {} and ID: {}", uname, userId);
-
-						// Construct the delete URL with the user ID
-						String deleteUrl = baseUrl + "/admin/realms/" + realm + "/users/" + userId;
-
-						// Set headers for deletion
-						HttpHeaders deleteHeaders = new HttpHeaders();
-						deleteHeaders.setBearerAuth(accessToken);
-						HttpEntity<String> deleteEntity = new HttpEntity<>(deleteHeaders);
-
-						try {
-							// Make the DELETE request to delete the user
-							ResponseEntity<String> apiResponse = callApi(deleteUrl, deleteEntity, HttpMethod.DELETE);
-
-							if (apiResponse.getStatusCode().is2xxSuccessful()) {
-								logger.info("User with username {} deleted successfully", uname);
-							} else {
-								logger.error("Error when deleting user {}. HTTP Status: {}", uname,
-										apiResponse.getStatusCode());
-							}
-						} catch (Exception e) {
-							logger.error("Error when deleting the user {}: {}", uname, e.getMessage(), e);
-							throw new KeycloakException("Error when deleting the user: " + e.getMessage(), e);
-						}
-
-						userFound = true; // Set flag to true
-						break; // Exit loop after finding and deleting the user
+						return userId;
 					}
 				}
-
-				if (!userFound) {
-					logger.warn("No user found with username: {}", uname);
-					return "User not found"; // You can return a message indicating the user was not found
-				}
+				return null;
 			} else {
 				logger.error("Error fetching user info for username {}. HTTP Status: {}", uname,
 						response.getStatusCode());
@@ -332,34 +321,75 @@ public class UsersService {
 			logger.error("Error fetching user info for username {}: {}", uname, e.getMessage(), e);
 			throw new KeycloakException("Error fetching user info: " + e.getMessage(), e);
 		}
+	}
 
-		return null; // Return null or any appropriate response as needed
+	private void deleteUserById(String uname, String userId) {
+		// Construct the delete URL with the user ID
+		String deleteUrl = baseUrl + "/admin/realms/" + realm + "/users/" + userId;
+
+		try {
+			// Make the DELETE request to delete the user
+			ResponseEntity<String> apiResponse = callAdminApi("deleteUser", deleteUrl, new HttpHeaders(), null,
+					HttpMethod.DELETE);
+
+			if (apiResponse.getStatusCode().is2xxSuccessful()) {
+				logger.info("User with username {} deleted successfully", uname);
+				userCache.invalidate(uname);
+				userIdCache.invalidate(uname);
+			} else {
+				logger.error("Error when deleting user {}. HTTP Status: {}", uname, apiResponse.getStatusCode());
+			}
+		} catch (Exception e) {
+			logger.error("Error when deleting the user {}: {}", uname, e.getMessage(), e);
+			throw new KeycloakException("Error when deleting the user: " + e.getMessage(), e);
+		}
+	}
+
+	// Records the username to ID mapping of a Keycloak user representation
+	private void rememberUserId(KeycloakUser user) {
+		userIdCache.put(user.username(), user.id());
 	}
 
-	public String loginValidation(String username, String password) {
+	public TokenResponse loginValidation(String username, String password) {
 		logger.info("Requesting user token from Keycloak");
-		String tokenUrl = baseUrl + "/realms/" + realm + "/protocol/openid-connect/token";
 
 		MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
 		map.add("grant_type", "password");
-		map.add("client_id", clientId);
-		map.add("client_secret", clientSecret);
 		map.add("username", username);
 		map.add("password", password);
 
+		return requestUserToken("login", map);
+	}
+
+	// Exchanges a refresh token for new tokens, avoiding a full password login
+	public TokenResponse refreshToken(String refreshToken) {
+		logger.info("Refreshing user token with Keycloak");
+
+		MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
+		map.add("grant_type", "refresh_token");
+		map.add("refresh_token", refreshToken);
+
+		return requestUserToken("refreshToken", map);
+	}
+
+	private TokenResponse requestUserToken(String operation, MultiValueMap<String, String> map) {
+		String tokenUrl = baseUrl + "/realms/" + realm + "/protocol/openid-connect/token";
+
+		map.add("client_id", clientId);
+		map.add("client_secret", clientSecret);
+
 		HttpHeaders headers = new HttpHeaders();
 		headers.setContentType(org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED);
 
 		HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(map, headers);
 
 		try {
-			ResponseEntity<String> response = callApi(tokenUrl, request, HttpMethod.POST);
+			ResponseEntity<String> response = callApi(operation, tokenUrl, request, HttpMethod.POST);
 
 			if (response.getStatusCode().is2xxSuccessful()) {
-				ObjectMapper mapper = new ObjectMapper();
-				String accessToken = mapper.readTree(response.getBody()).get("access_token").asText();
+				TokenResponse tokens = KeycloakCodec.readTokens(response.getBody());
 				logger.info("User token successfully retrieved.");
-				return accessToken;
+				return tokens;
 			} else {
 				logger.error("Failed to retrieve token. HTTP Status: {}", response.getStatusCode());
 				throw new KeycloakException("Failed to retrieve token. HTTP Status: " + response.getStatusCode());
@@ -0,0 +1,82 @@
+package com.app.keycloak.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+// Starts async processing the way a StreamingResponseBody does, after the interceptors WebConfig registers
+class StreamTimeoutInterceptorTest {
+
+	private static final long DEFAULT_TIMEOUT_MS = 30_000;
+	private static final long STREAM_TIMEOUT_MS = 1_800_000;
+
+	private List<MappedInterceptor> interceptors;
+
+	@BeforeEach
+	void setUp() {
+		StreamTimeoutInterceptor streamTimeout = new StreamTimeoutInterceptor();
+		ReflectionTestUtils.setField(streamTimeout, "timeoutMs", STREAM_TIMEOUT_MS);
+
+		WebConfig webConfig = new WebConfig();
+		ReflectionTestUtils.setField(webConfig, "tokenAuthInterceptor", new TokenAuthInterceptor());
+		ReflectionTestUtils.setField(webConfig, "streamTimeoutInterceptor", streamTimeout);
+		Registry registry = new Registry();
+		webConfig.addInterceptors(registry);
+		interceptors = registry.mapped().stream()
+				.filter(interceptor -> interceptor.getInterceptor() == streamTimeout)
+				.toList();
+	}
+
+	@Test
+	void streamingRoutesGetTheirOwnTimeout() throws Exception {
+		assertEquals(STREAM_TIMEOUT_MS, asyncTimeout("/easybuy/admin/exportproducts"));
+		assertEquals(STREAM_TIMEOUT_MS, asyncTimeout("/easybuy/admin/getusers/stream"));
+	}
+
+	@Test
+	void otherAsyncRoutesKeepTheDefaultTimeout() throws Exception {
+		assertEquals(DEFAULT_TIMEOUT_MS, asyncTimeout("/easybuy/admin/getusers"));
+		assertEquals(DEFAULT_TIMEOUT_MS, asyncTimeout("/easybuy/admin/getuser"));
+	}
+
+	private long asyncTimeout(String uri) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+		request.setAsyncSupported(true);
+		ServletRequestPathUtils.parseAndCache(request);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		for (MappedInterceptor interceptor : interceptors) {
+			if (interceptor.matches(request)) {
+				interceptor.preHandle(request, response, new Object());
+			}
+		}
+
+		// As RequestMappingHandlerAdapter sets it up, with spring.mvc.async.request-timeout
+		StandardServletAsyncWebRequest asyncRequest = new StandardServletAsyncWebRequest(request, response);
+		asyncRequest.setTimeout(DEFAULT_TIMEOUT_MS);
+		WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+		asyncManager.setAsyncWebRequest(asyncRequest);
+		asyncManager.setTaskExecutor(new SimpleAsyncTaskExecutor());
+		asyncManager.startCallableProcessing(() -> null);
+		return request.getAsyncContext().getTimeout();
+	}
+
+	private static final class Registry extends InterceptorRegistry {
+
+		List<MappedInterceptor> mapped() {
+			return getInterceptors().stream().map(MappedInterceptor.class::cast).toList();
+		}
+	}
+}
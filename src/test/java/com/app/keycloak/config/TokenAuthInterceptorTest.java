@@ -0,0 +1,99 @@
+package com.app.keycloak.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import com.app.keycloak.service.JwtVerifier;
+import com.app.keycloak.service.JwtVerifier.VerifiedToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Runs the interceptors as WebConfig registers them, matched the way the handler mapping matches paths
+class TokenAuthInterceptorTest {
+
+	private List<MappedInterceptor> interceptors;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		JwtVerifier jwtVerifier = mock(JwtVerifier.class);
+		when(jwtVerifier.verify("user-token"))
+				.thenReturn(new VerifiedToken("user-1", "bob", List.of("user"), Instant.now().plusSeconds(300)));
+		when(jwtVerifier.verify("admin-token"))
+				.thenReturn(new VerifiedToken("user-2", "alice", List.of("admin"), Instant.now().plusSeconds(300)));
+
+		TokenAuthInterceptor interceptor = new TokenAuthInterceptor();
+		ReflectionTestUtils.setField(interceptor, "enabled", true);
+		ReflectionTestUtils.setField(interceptor, "adminRole", "admin");
+		ReflectionTestUtils.setField(interceptor, "jwtVerifier", jwtVerifier);
+		ReflectionTestUtils.setField(interceptor, "objectMapper", new ObjectMapper());
+
+		WebConfig webConfig = new WebConfig();
+		ReflectionTestUtils.setField(webConfig, "tokenAuthInterceptor", interceptor);
+		ReflectionTestUtils.setField(webConfig, "streamTimeoutInterceptor", new StreamTimeoutInterceptor());
+		Registry registry = new Registry();
+		webConfig.addInterceptors(registry);
+		interceptors = registry.mapped();
+	}
+
+	@Test
+	void userRoutesTakeAnyValidToken() throws Exception {
+		assertEquals(200, call("/easybuy/user/getproducts", "user-token"));
+		assertEquals(401, call("/easybuy/user/getproducts", null));
+	}
+
+	@Test
+	void adminRoutesNeedTheAdminRole() throws Exception {
+		assertEquals(403, call("/easybuy/admin/adduser", "user-token"));
+		assertEquals(200, call("/easybuy/admin/adduser", "admin-token"));
+		assertEquals(200, call("/easybuy/admin/loginvalidation", null));
+	}
+
+	@Test
+	void encodedAndMatrixPathsStillNeedTheAdminRole() throws Exception {
+		assertEquals(403, call("/easybuy/admin;x=1/adduser", "user-token"));
+		assertEquals(403, call("/easybuy/%61dmin/adduser", "user-token"));
+		assertEquals(403, call("/easybuy/admin/adduser;x=1", "user-token"));
+		assertEquals(401, call("/easybuy/%61dmin/adduser", null));
+	}
+
+	// Returns the status the interceptor chain leaves, 200 if every interceptor let the request through
+	private int call(String uri, String token) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+		if (token != null) {
+			request.addHeader("Authorization", "Bearer " + token);
+		}
+		ServletRequestPathUtils.parseAndCache(request);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		int matched = 0;
+		for (MappedInterceptor interceptor : interceptors) {
+			if (interceptor.matches(request) && !(interceptor.getInterceptor() instanceof StreamTimeoutInterceptor)) {
+				matched++;
+				if (!interceptor.preHandle(request, response, new Object())) {
+					return response.getStatus();
+				}
+			}
+		}
+		assertTrue(matched <= 1, "Each route goes through one token check");
+		return 200;
+	}
+
+	private static final class Registry extends InterceptorRegistry {
+
+		List<MappedInterceptor> mapped() {
+			return getInterceptors().stream().map(MappedInterceptor.class::cast).toList();
+		}
+	}
+}
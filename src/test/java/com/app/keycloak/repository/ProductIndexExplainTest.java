@@ -0,0 +1,104 @@
+package com.app.keycloak.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.app.keycloak.entity.Product;
+
+/**
+ * Checks with EXPLAIN that MySQL answers the filter query shapes from the
+ * declared indexes. The table is copied from {@code product} as
+ * {@code ddl-auto} created it, so this also checks that the indexes exist.
+ * Needs a MySQL database; run with
+ * {@code mvn test -Dtest=ProductIndexExplainTest -Dexplain.url=jdbc:mysql://localhost:3306/easybuy -Dexplain.user=root -Dexplain.password=...}.
+ */
+@EnabledIfSystemProperty(named = "explain.url", matches = ".+")
+class ProductIndexExplainTest {
+
+	private static final String TABLE = "product_explain_test";
+	private static final int ROWS = 20_000;
+
+	private static Connection connection;
+
+	@BeforeAll
+	static void createTable() throws Exception {
+		connection = DriverManager.getConnection(System.getProperty("explain.url"),
+				System.getProperty("explain.user", "root"), System.getProperty("explain.password", ""));
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("DROP TABLE IF EXISTS " + TABLE);
+			statement.execute("CREATE TABLE " + TABLE + " LIKE product");
+		}
+		// Enough rows over enough categories that a full scan is clearly the worse plan
+		connection.setAutoCommit(false);
+		try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + TABLE
+				+ " (productid, productname, price, quantity, category, searchkeyword, version)"
+				+ " VALUES (?, ?, ?, ?, ?, ?, 0)")) {
+			for (int id = 1; id <= ROWS; id++) {
+				insert.setLong(1, id);
+				insert.setString(2, "Product " + id);
+				insert.setInt(3, 1 + (id * 7919) % 10_000);
+				insert.setInt(4, id % 5);
+				insert.setString(5, "category" + id % 50);
+				insert.setString(6, "keyword");
+				insert.addBatch();
+				if (id % 1000 == 0) {
+					insert.executeBatch();
+				}
+			}
+		}
+		connection.commit();
+		connection.setAutoCommit(true);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("ANALYZE TABLE " + TABLE);
+		}
+	}
+
+	@AfterAll
+	static void dropTable() throws Exception {
+		if (connection != null) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("DROP TABLE IF EXISTS " + TABLE);
+			}
+			connection.close();
+		}
+	}
+
+	@Test
+	void categoryAndPriceRangeUseTheCompositeIndex() throws Exception {
+		assertIndexed("SELECT * FROM " + TABLE + " WHERE category = 'category7' AND price >= 100 AND price <= 2000"
+				+ " ORDER BY price, productid LIMIT 51", Product.CATEGORY_PRICE_INDEX);
+	}
+
+	@Test
+	void keysetPageInPriceOrderUsesTheCompositeIndex() throws Exception {
+		assertIndexed("SELECT * FROM " + TABLE + " WHERE category = 'category7' AND quantity > 0"
+				+ " AND (price < 5000 OR (price = 5000 AND productid < 1234))"
+				+ " ORDER BY price DESC, productid DESC LIMIT 51", Product.CATEGORY_PRICE_INDEX);
+	}
+
+	@Test
+	void priceRangeAloneUsesThePriceIndex() throws Exception {
+		assertIndexed("SELECT * FROM " + TABLE + " WHERE price >= 100 AND price <= 150 ORDER BY price, productid"
+				+ " LIMIT 51", Product.PRICE_INDEX);
+	}
+
+	private static void assertIndexed(String sql, String index) throws Exception {
+		try (Statement statement = connection.createStatement(); ResultSet plan = statement.executeQuery("EXPLAIN " + sql)) {
+			plan.next();
+			assertEquals(index, plan.getString("key"), "Plan: " + plan.getString("type") + ", " + plan.getString("Extra"));
+			String extra = plan.getString("Extra");
+			assertFalse(extra != null && extra.contains("filesort"), "Sorted after the scan: " + extra);
+		}
+	}
+}
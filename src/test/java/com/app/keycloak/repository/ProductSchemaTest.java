@@ -0,0 +1,68 @@
+package com.app.keycloak.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.Test;
+
+import com.app.keycloak.entity.Product;
+
+/**
+ * Checks that the schema Hibernate generates from {@link Product}, with the
+ * MySQL dialect the application uses, declares the filter indexes. Runs on an
+ * in-memory H2 database in MySQL mode, so it needs no server;
+ * {@link ProductIndexExplainTest} checks the query plans on a real MySQL.
+ */
+class ProductSchemaTest {
+
+	private static final String URL = "jdbc:h2:mem:product_schema;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+	@Test
+	void generatedSchemaHasTheFilterIndexes() throws Exception {
+		StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+				.applySetting(AvailableSettings.JAKARTA_JDBC_URL, URL)
+				.applySetting(AvailableSettings.JAKARTA_JDBC_USER, "sa")
+				.applySetting(AvailableSettings.DIALECT, "org.hibernate.dialect.MySQLDialect")
+				.applySetting(AvailableSettings.HBM2DDL_AUTO, "create")
+				.build();
+		try (SessionFactory sessionFactory = new MetadataSources(registry).addAnnotatedClass(Product.class)
+				.buildMetadata().buildSessionFactory();
+				Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+			Map<String, List<String>> indexes = indexes(connection, "product");
+
+			assertEquals(List.of("category", "price"), indexes.get(Product.CATEGORY_PRICE_INDEX), indexes.toString());
+			assertEquals(List.of("price"), indexes.get(Product.PRICE_INDEX), indexes.toString());
+		} finally {
+			StandardServiceRegistryBuilder.destroy(registry);
+		}
+	}
+
+	// Index name to its columns in key order
+	private static Map<String, List<String>> indexes(Connection connection, String table) throws Exception {
+		Map<String, List<String>> indexes = new TreeMap<>();
+		try (ResultSet rows = connection.getMetaData().getIndexInfo(null, null, table, false, false)) {
+			while (rows.next()) {
+				List<String> columns = indexes.computeIfAbsent(rows.getString("INDEX_NAME"),
+						name -> new ArrayList<>());
+				int position = rows.getInt("ORDINAL_POSITION");
+				while (columns.size() < position) {
+					columns.add(null);
+				}
+				columns.set(position - 1, rows.getString("COLUMN_NAME"));
+			}
+		}
+		return indexes;
+	}
+}
@@ -0,0 +1,203 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import com.app.keycloak.service.AdminTokenManager.AdminToken;
+
+class AdminTokenManagerTest {
+
+	private static final Instant ISSUED_AT = Instant.parse("2026-01-01T00:00:00Z");
+
+	private final AtomicInteger requests = new AtomicInteger();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private volatile boolean holdRequests;
+	private KeycloakGuard guard;
+	private AdminTokenManager tokenManager;
+
+	@BeforeEach
+	void setUp() {
+		RestTemplate restTemplate = mock(RestTemplate.class);
+		// Every token request gets a new token, valid for five minutes
+		when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+				.thenAnswer(invocation -> {
+					int request = requests.incrementAndGet();
+					if (holdRequests) {
+						release.await(5, TimeUnit.SECONDS);
+					}
+					return ResponseEntity.ok("{\"access_token\":\"token-" + request + "\",\"expires_in\":300}");
+				});
+
+		MetricsRegistry metrics = new MetricsRegistry();
+		guard = KeycloakFixture.guard(metrics);
+
+		tokenManager = new AdminTokenManager();
+		ReflectionTestUtils.setField(tokenManager, "baseUrl", "http://keycloak.invalid");
+		ReflectionTestUtils.setField(tokenManager, "clientId", KeycloakFixture.CLIENT_ID);
+		ReflectionTestUtils.setField(tokenManager, "clientSecret", "secret");
+		ReflectionTestUtils.setField(tokenManager, "grantType", "client_credentials");
+		ReflectionTestUtils.setField(tokenManager, "realm", KeycloakFixture.REALM);
+		ReflectionTestUtils.setField(tokenManager, "refreshAheadSeconds", 30L);
+		ReflectionTestUtils.setField(tokenManager, "defaultTtlSeconds", 60L);
+		ReflectionTestUtils.setField(tokenManager, "keycloakRestTemplate", restTemplate);
+		ReflectionTestUtils.setField(tokenManager, "metrics", metrics);
+		ReflectionTestUtils.setField(tokenManager, "keycloakGuard", guard);
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		guard.shutdown();
+		tokenManager.shutdown();
+	}
+
+	@Test
+	void expiresInWinsOverTheJwtExpiry() throws Exception {
+		String jwt = jwt("{\"exp\":" + ISSUED_AT.plusSeconds(900).getEpochSecond() + "}");
+
+		AdminToken token = tokenManager.parseToken(
+				"{\"access_token\":\"" + jwt + "\",\"expires_in\":300}", ISSUED_AT);
+
+		assertEquals(jwt, token.value());
+		assertEquals(ISSUED_AT.plusSeconds(300), token.expiresAt());
+		assertEquals(ISSUED_AT.plusSeconds(270), token.refreshAt());
+	}
+
+	@Test
+	void jwtExpiryIsUsedWithoutExpiresIn() throws Exception {
+		String jwt = jwt("{\"sub\":\"service-account\",\"exp\":" + ISSUED_AT.plusSeconds(900).getEpochSecond() + "}");
+
+		AdminToken token = tokenManager.parseToken("{\"access_token\":\"" + jwt + "\"}", ISSUED_AT);
+
+		assertEquals(ISSUED_AT.plusSeconds(900), token.expiresAt());
+		assertEquals(ISSUED_AT.plusSeconds(870), token.refreshAt());
+	}
+
+	@Test
+	void defaultTtlIsUsedWhenTheTokenCarriesNoExpiry() throws Exception {
+		AdminToken opaque = tokenManager.parseToken("{\"access_token\":\"opaque\"}", ISSUED_AT);
+		AdminToken noExp = tokenManager.parseToken("{\"access_token\":\"" + jwt("{\"sub\":\"x\"}") + "\"}",
+				ISSUED_AT);
+
+		assertEquals(ISSUED_AT.plusSeconds(60), opaque.expiresAt());
+		assertEquals(ISSUED_AT.plusSeconds(60), noExp.expiresAt());
+		assertEquals(ISSUED_AT.plusSeconds(30), opaque.refreshAt());
+	}
+
+	@Test
+	void shortLivedTokensAreNotRefreshedBeforeHalfTheirLifetime() throws Exception {
+		AdminToken token = tokenManager.parseToken("{\"access_token\":\"short\",\"expires_in\":40}", ISSUED_AT);
+
+		// 30 s ahead of a 40 s token would refresh after 10 s
+		assertEquals(ISSUED_AT.plusSeconds(20), token.refreshAt());
+	}
+
+	@Test
+	void tokenCountsAsExpiredFiveSecondsEarly() {
+		AdminToken token = new AdminToken("t", ISSUED_AT.plusSeconds(60), ISSUED_AT.plusSeconds(30));
+
+		assertFalse(token.isExpired(ISSUED_AT.plusSeconds(54)));
+		assertTrue(token.isExpired(ISSUED_AT.plusSeconds(55)));
+		assertFalse(token.isDueForRefresh(ISSUED_AT.plusSeconds(29)));
+		assertTrue(token.isDueForRefresh(ISSUED_AT.plusSeconds(30)));
+	}
+
+	@Test
+	void tokenIsFetchedOnceAndCached() {
+		assertEquals("token-1", tokenManager.getToken());
+		assertEquals("token-1", tokenManager.getToken());
+		assertEquals("token-1", tokenManager.peekToken());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	void tokenDueForRefreshIsServedWhileTheNextOneIsFetched() throws Exception {
+		Instant now = Instant.now();
+		current().set(new AdminToken("old", now.plusSeconds(20), now.minusSeconds(1)));
+		holdRequests = true;
+
+		// The replacement is held back by Keycloak, yet callers keep getting the old token
+		for (int i = 0; i < 5; i++) {
+			assertEquals("old", tokenManager.getToken());
+			assertEquals("old", tokenManager.peekToken());
+		}
+		release.countDown();
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!"token-1".equals(tokenManager.peekToken()) && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals("token-1", tokenManager.peekToken());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	void concurrentCallersWithoutATokenShareOneRequest() throws Exception {
+		holdRequests = true;
+		int callers = 8;
+		CountDownLatch ready = new CountDownLatch(callers);
+		ConcurrentLinkedQueue<String> tokens = new ConcurrentLinkedQueue<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < callers; i++) {
+			Thread thread = new Thread(() -> {
+				ready.countDown();
+				tokens.add(tokenManager.getToken());
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		ready.await(5, TimeUnit.SECONDS);
+
+		// Let every caller block on the token request before Keycloak answers it
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (threads.stream().anyMatch(thread -> thread.getState() == Thread.State.RUNNABLE)
+				&& System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join(5000);
+		}
+
+		assertEquals(callers, tokens.size());
+		assertTrue(tokens.stream().allMatch("token-1"::equals));
+		assertEquals(1, requests.get());
+	}
+
+	@SuppressWarnings("unchecked")
+	private AtomicReference<AdminToken> current() {
+		return (AtomicReference<AdminToken>) ReflectionTestUtils.getField(tokenManager, "current");
+	}
+
+	private static String jwt(String payload) {
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "."
+				+ encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".";
+	}
+}
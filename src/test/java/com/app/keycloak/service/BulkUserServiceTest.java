@@ -0,0 +1,97 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+import com.app.keycloak.entity.BulkUserReport;
+import com.app.keycloak.entity.BulkUserResult.Status;
+import com.app.keycloak.exceptions.KeycloakException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class BulkUserServiceTest {
+
+	private BulkUserService bulkUserService;
+	private UsersService usersService;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		usersService = mock(UsersService.class);
+		when(usersService.addUser(any())).thenReturn("User created successfully");
+		when(usersService.addUser(argThat(user -> "taken".equals(user.getUsername()))))
+				.thenThrow(new KeycloakException("Error creating user",
+						HttpClientErrorException.create(HttpStatus.CONFLICT, "Conflict", null, null, null)));
+
+		bulkUserService = new BulkUserService();
+		ReflectionTestUtils.setField(bulkUserService, "concurrency", 4);
+		ReflectionTestUtils.setField(bulkUserService, "usersService", usersService);
+		ReflectionTestUtils.setField(bulkUserService, "objectMapper", new ObjectMapper().findAndRegisterModules());
+		bulkUserService.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		bulkUserService.shutdown();
+	}
+
+	@Test
+	void ndjsonReportsEveryRecordInOrder() throws Exception {
+		String body = """
+				{"username":"alice","password":"pw"}
+				{"username":"taken","password":"pw"}
+				not json
+				{"password":"pw"}
+				{"username":"bob","password":"pw"}
+				""";
+
+		BulkUserReport report = bulkUserService.addUsers(stream(body), true);
+
+		assertEquals(5, report.getTotal());
+		assertEquals(Status.CREATED, report.getResults().get(0).getStatus());
+		assertEquals(Status.CONFLICT, report.getResults().get(1).getStatus());
+		assertEquals(Status.FAILED, report.getResults().get(2).getStatus());
+		assertEquals(Status.FAILED, report.getResults().get(3).getStatus());
+		assertEquals(Status.CREATED, report.getResults().get(4).getStatus());
+		assertEquals("bob", report.getResults().get(4).getUsername());
+	}
+
+	@Test
+	void jsonArrayIsReadElementByElement() throws Exception {
+		String body = "[{\"username\":\"alice\"},{\"username\":\"bob\"},{\"username\":\"taken\"}]";
+
+		BulkUserReport report = bulkUserService.addUsers(stream(body), false);
+
+		assertEquals(2, report.getSummary().get(Status.CREATED));
+		assertEquals(1, report.getSummary().get(Status.CONFLICT));
+	}
+
+	@Test
+	void deleteReportsDeletedAndMissingUsers() throws Exception {
+		when(usersService.deleteUserIfPresent("alice")).thenReturn(true);
+		when(usersService.deleteUserIfPresent("ghost")).thenReturn(false);
+		when(usersService.deleteUserIfPresent("broken")).thenThrow(new KeycloakException("down"));
+
+		BulkUserReport report = bulkUserService.deleteUsers(List.of("alice", "ghost", "broken"));
+
+		assertEquals(Status.DELETED, report.getResults().get(0).getStatus());
+		assertEquals(Status.NOT_FOUND, report.getResults().get(1).getStatus());
+		assertEquals(Status.FAILED, report.getResults().get(2).getStatus());
+	}
+
+	private static ByteArrayInputStream stream(String body) {
+		return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+	}
+}
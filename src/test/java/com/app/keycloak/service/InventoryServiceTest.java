@@ -0,0 +1,204 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.app.keycloak.exceptions.CustomException;
+import com.app.keycloak.exceptions.InsufficientStockException;
+import com.app.keycloak.exceptions.ProductNotFoundException;
+import com.app.keycloak.repository.ProductRepository;
+
+class InventoryServiceTest {
+
+	private static final long HOT_PRODUCT = 7L;
+
+	private InventoryService inventoryService;
+	private final Object row = new Object();
+	private int stock;
+	private int lowestStock;
+	private final AtomicInteger concurrentUpdates = new AtomicInteger();
+	private int mostConcurrentUpdates;
+
+	@BeforeEach
+	void setUp() {
+		ProductRepository repository = mock(ProductRepository.class);
+		// Behaves like the conditional UPDATE under a row lock, with some latency
+		when(repository.adjustQuantity(anyLong(), anyInt())).thenAnswer(invocation -> {
+			long id = invocation.getArgument(0);
+			int delta = invocation.getArgument(1);
+			if (id != HOT_PRODUCT) {
+				return 0;
+			}
+			int running = concurrentUpdates.incrementAndGet();
+			try {
+				synchronized (row) {
+					mostConcurrentUpdates = Math.max(mostConcurrentUpdates, running);
+					Thread.sleep(1);
+					if (stock + delta < 0) {
+						return 0;
+					}
+					stock += delta;
+					lowestStock = Math.min(lowestStock, stock);
+					return 1;
+				}
+			} finally {
+				concurrentUpdates.decrementAndGet();
+			}
+		});
+		when(repository.existsById(HOT_PRODUCT)).thenReturn(true);
+
+		ProductCache productCache = new ProductCache();
+		ReflectionTestUtils.setField(productCache, "enabled", false);
+		productCache.init();
+
+		inventoryService = new InventoryService();
+		ReflectionTestUtils.setField(inventoryService, "maxBatch", 100);
+		ReflectionTestUtils.setField(inventoryService, "maxQuantity", 1_000_000);
+		ReflectionTestUtils.setField(inventoryService, "productRepository", repository);
+		ReflectionTestUtils.setField(inventoryService, "productCache", productCache);
+		ReflectionTestUtils.setField(inventoryService, "searchIndex", new ProductSearchIndex());
+	}
+
+	@Test
+	void flashSaleNeverOversells() throws Exception {
+		stock = 50;
+		lowestStock = stock;
+		int buyers = 400;
+		List<Boolean> outcomes = runConcurrently(buyers, buyer -> {
+			try {
+				inventoryService.reserve(HOT_PRODUCT, 1);
+				return true;
+			} catch (InsufficientStockException e) {
+				return false;
+			}
+		});
+
+		assertEquals(50, outcomes.stream().filter(reserved -> reserved).count());
+		assertEquals(0, stock);
+		assertEquals(0, lowestStock);
+		// Requests were combined and only one UPDATE at a time reached the row
+		assertEquals(1, mostConcurrentUpdates);
+		assertTrue((long) inventoryService.stats().get("updates") < buyers);
+	}
+
+	@Test
+	void mixedReservationsAndReleasesBalance() throws Exception {
+		stock = 20;
+		lowestStock = stock;
+		AtomicInteger reserved = new AtomicInteger();
+		AtomicInteger released = new AtomicInteger();
+		runConcurrently(300, request -> {
+			int quantity = request % 3 + 1;
+			if (request % 4 == 0) {
+				inventoryService.release(HOT_PRODUCT, quantity);
+				released.addAndGet(quantity);
+			} else {
+				try {
+					inventoryService.reserve(HOT_PRODUCT, quantity);
+					reserved.addAndGet(quantity);
+				} catch (InsufficientStockException e) {
+					// Sold out at that moment
+				}
+			}
+			return true;
+		});
+
+		assertEquals(20 - reserved.get() + released.get(), stock);
+		assertTrue(lowestStock >= 0);
+	}
+
+	@Test
+	void unknownProductAndBadQuantityAreRejected() {
+		assertThrows(ProductNotFoundException.class, () -> inventoryService.reserve(99L, 1));
+		assertThrows(CustomException.class, () -> inventoryService.reserve(HOT_PRODUCT, 0));
+		assertThrows(CustomException.class, () -> inventoryService.reserve(HOT_PRODUCT, 1_000_001));
+		assertThrows(CustomException.class, () -> inventoryService.release(HOT_PRODUCT, Integer.MAX_VALUE));
+	}
+
+	@Test
+	void combinedReservationsThatOverflowAnIntAreNotApplied() throws Exception {
+		ReflectionTestUtils.setField(inventoryService, "maxQuantity", Integer.MAX_VALUE);
+		stock = 2;
+		lowestStock = stock;
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			Future<Boolean> first;
+			List<Future<Boolean>> huge = new ArrayList<>();
+			// Holding the row keeps the first UPDATE in flight so both huge reservations queue behind it
+			synchronized (row) {
+				first = executor.submit(() -> reserve(1));
+				while (concurrentUpdates.get() == 0) {
+					Thread.sleep(1);
+				}
+				huge.add(executor.submit(() -> reserve(Integer.MAX_VALUE)));
+				huge.add(executor.submit(() -> reserve(Integer.MAX_VALUE)));
+				while ((long) inventoryService.stats().get("requests") < 3) {
+					Thread.sleep(1);
+				}
+			}
+
+			assertTrue(first.get(5, TimeUnit.SECONDS));
+			for (Future<Boolean> reservation : huge) {
+				assertFalse(reservation.get(5, TimeUnit.SECONDS));
+			}
+			assertEquals(1, stock);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private boolean reserve(int quantity) throws CustomException {
+		try {
+			inventoryService.reserve(HOT_PRODUCT, quantity);
+			return true;
+		} catch (InsufficientStockException e) {
+			return false;
+		}
+	}
+
+	private interface Request {
+		Boolean run(int index) throws Exception;
+	}
+
+	private static List<Boolean> runConcurrently(int count, Request request) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(64);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				int index = i;
+				futures.add(executor.submit(() -> {
+					start.await();
+					return request.run(index);
+				}));
+			}
+			start.countDown();
+			List<Boolean> results = new ArrayList<>();
+			for (Future<Boolean> future : futures) {
+				results.add(future.get(30, TimeUnit.SECONDS));
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
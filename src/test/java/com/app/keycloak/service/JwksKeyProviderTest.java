@@ -0,0 +1,95 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import com.app.keycloak.exceptions.KeycloakException;
+import com.app.keycloak.stub.KeycloakStub;
+
+class JwksKeyProviderTest {
+
+	private static final String REALM = "easybuy";
+
+	private KeycloakStub stub;
+	private KeycloakGuard guard;
+	private JwksKeyProvider keyProvider;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		stub = KeycloakStub.start(REALM, "easybuy-app");
+		guard = KeycloakFixture.guard(new MetricsRegistry(), "jwks=1000");
+
+		keyProvider = new JwksKeyProvider();
+		ReflectionTestUtils.setField(keyProvider, "baseUrl", stub.baseUrl());
+		ReflectionTestUtils.setField(keyProvider, "realm", REALM);
+		ReflectionTestUtils.setField(keyProvider, "minRefreshSeconds", 30L);
+		ReflectionTestUtils.setField(keyProvider, "keycloakRestTemplate", new RestTemplate());
+		ReflectionTestUtils.setField(keyProvider, "keycloakGuard", guard);
+	}
+
+	@AfterEach
+	void tearDown() {
+		stub.close();
+		guard.shutdown();
+	}
+
+	@Test
+	void unknownKeysRefetchAtMostOncePerInterval() {
+		assertNotNull(keyProvider.getKey("stub-key"));
+		assertNull(keyProvider.getKey("made-up"));
+		assertNull(keyProvider.getKey("made-up-too"));
+		assertEquals(1, stub.requestCount("certs"));
+	}
+
+	@Test
+	void failingKeycloakIsNotAskedForEveryToken() {
+		stub.setErrorRate(1);
+
+		assertThrows(KeycloakException.class, () -> keyProvider.getKey("stub-key"));
+		for (int i = 0; i < 10; i++) {
+			assertNull(keyProvider.getKey("stub-key"));
+		}
+		assertEquals(1, stub.requestCount("error"));
+	}
+
+	@Test
+	void stalledKeycloakDoesNotHoldRequestsBeyondTheTimeout() throws Exception {
+		stub.setLatency(Duration.ofSeconds(5));
+		ExecutorService callers = Executors.newFixedThreadPool(8);
+		try {
+			long start = System.nanoTime();
+			List<Future<?>> lookups = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				lookups.add(callers.submit(() -> keyProvider.getKey("stub-key")));
+			}
+			for (Future<?> lookup : lookups) {
+				try {
+					lookup.get(3, TimeUnit.SECONDS);
+				} catch (ExecutionException e) {
+					assertTrue(KeycloakGuard.isOutage(e.getCause()));
+				}
+			}
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 3000);
+		} finally {
+			callers.shutdownNow();
+		}
+	}
+}
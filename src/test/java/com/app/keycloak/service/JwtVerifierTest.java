@@ -0,0 +1,131 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.app.keycloak.exceptions.InvalidTokenException;
+import com.app.keycloak.service.JwtVerifier.VerifiedToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class JwtVerifierTest {
+
+	private static final String ISSUER = "http://localhost:8080/realms/master";
+
+	private static KeyPair keyPair;
+	private static KeyPair otherKeyPair;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private JwtVerifier verifier;
+
+	@BeforeAll
+	static void generateKeys() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		keyPair = generator.generateKeyPair();
+		otherKeyPair = generator.generateKeyPair();
+	}
+
+	@BeforeEach
+	void setUp() {
+		JwksKeyProvider keyProvider = mock(JwksKeyProvider.class);
+		when(keyProvider.getKey("key-1")).thenReturn((RSAPublicKey) keyPair.getPublic());
+
+		verifier = new JwtVerifier();
+		ReflectionTestUtils.setField(verifier, "issuer", ISSUER);
+		ReflectionTestUtils.setField(verifier, "audience", "easybuy");
+		ReflectionTestUtils.setField(verifier, "clockSkewSeconds", 30L);
+		ReflectionTestUtils.setField(verifier, "keyProvider", keyProvider);
+	}
+
+	@Test
+	void acceptsValidToken() throws Exception {
+		VerifiedToken token = verifier.verify(sign(keyPair, "key-1", claims(300, "easybuy")));
+
+		assertEquals("alice", token.username());
+		assertTrue(token.hasRole("admin"));
+	}
+
+	@Test
+	void acceptsClientAsAuthorizedParty() throws Exception {
+		Map<String, Object> claims = new HashMap<>(claims(300, "account"));
+		claims.put("azp", "easybuy");
+
+		assertEquals("alice", verifier.verify(sign(keyPair, "key-1", claims)).username());
+	}
+
+	@Test
+	void rejectsExpiredToken() {
+		assertThrows(InvalidTokenException.class,
+				() -> verifier.verify(sign(keyPair, "key-1", claims(-120, "easybuy"))));
+	}
+
+	@Test
+	void rejectsWrongAudience() {
+		assertThrows(InvalidTokenException.class,
+				() -> verifier.verify(sign(keyPair, "key-1", claims(300, "other"))));
+	}
+
+	@Test
+	void rejectsForgedSignature() {
+		assertThrows(InvalidTokenException.class,
+				() -> verifier.verify(sign(otherKeyPair, "key-1", claims(300, "easybuy"))));
+	}
+
+	@Test
+	void rejectsUnknownKey() {
+		assertThrows(InvalidTokenException.class,
+				() -> verifier.verify(sign(keyPair, "key-2", claims(300, "easybuy"))));
+	}
+
+	@Test
+	void parsesRealmKeySet() throws Exception {
+		RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		Map<String, Object> jwks = Map.of("keys", new Object[] {
+				Map.of("kid", "key-1", "kty", "RSA", "use", "sig", "alg", "RS256",
+						"n", encoder.encodeToString(publicKey.getModulus().toByteArray()),
+						"e", encoder.encodeToString(publicKey.getPublicExponent().toByteArray())),
+				Map.of("kid", "enc-1", "kty", "RSA", "use", "enc", "n", "AQAB", "e", "AQAB") });
+
+		Map<String, RSAPublicKey> keys = JwksKeyProvider.parseKeys(mapper.valueToTree(jwks));
+
+		assertEquals(1, keys.size());
+		assertEquals(publicKey.getModulus(), keys.get("key-1").getModulus());
+	}
+
+	private static Map<String, Object> claims(long expiresInSeconds, String audience) {
+		long now = Instant.now().getEpochSecond();
+		return Map.of("iss", ISSUER, "sub", "user-1", "preferred_username", "alice", "aud", audience,
+				"exp", now + expiresInSeconds, "iat", now, "realm_access", Map.of("roles", new String[] { "admin" }));
+	}
+
+	private String sign(KeyPair signingKey, String kid, Map<String, Object> claims) throws Exception {
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		String header = encoder
+				.encodeToString(mapper.writeValueAsBytes(Map.of("alg", "RS256", "typ", "JWT", "kid", kid)));
+		String payload = encoder.encodeToString(mapper.writeValueAsBytes(claims));
+
+		Signature signature = Signature.getInstance("SHA256withRSA");
+		signature.initSign(signingKey.getPrivate());
+		signature.update((header + "." + payload).getBytes(StandardCharsets.US_ASCII));
+		return header + "." + payload + "." + encoder.encodeToString(signature.sign());
+	}
+}
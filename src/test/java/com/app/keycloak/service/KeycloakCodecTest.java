@@ -0,0 +1,119 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.app.keycloak.entity.TokenResponse;
+import com.app.keycloak.entity.UserDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class KeycloakCodecTest {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	void readsUsersAndSkipsUnusedFields() throws Exception {
+		String body = "[{\"id\":\"u-1\",\"createdTimestamp\":1,\"username\":\"alice\",\"firstName\":\"Alice\","
+				+ "\"lastName\":\"Smith\",\"email\":\"alice@example.com\",\"access\":{\"view\":true},"
+				+ "\"attributes\":{\"city\":[\"Pune\",\"Delhi\"],\"phno\":[\"98765\"],\"other\":[{\"x\":1}]},"
+				+ "\"requiredActions\":[]}]";
+
+		List<KeycloakUser> users = KeycloakCodec.readUsers(body);
+
+		assertEquals(List.of(new KeycloakUser("u-1", "alice", "Alice", "Smith", "alice@example.com", "Pune", "98765")),
+				users);
+	}
+
+	@Test
+	void missingOrEmptyAttributesAreNull() throws Exception {
+		String body = "[{\"id\":\"u-1\",\"username\":\"bob\"},"
+				+ "{\"id\":\"u-2\",\"username\":\"carol\",\"attributes\":{\"city\":[],\"phno\":null}},"
+				+ "{\"id\":\"u-3\",\"username\":\"dave\",\"attributes\":{\"city\":\"Goa\"}}]";
+
+		List<KeycloakUser> users = KeycloakCodec.readUsers(body);
+
+		assertEquals(3, users.size());
+		assertNull(users.get(0).city());
+		assertNull(users.get(1).city());
+		assertNull(users.get(1).phno());
+		assertEquals("Goa", users.get(2).city());
+		assertNull(users.get(0).toUserDto().getMobilenumber());
+	}
+
+	@Test
+	void writesTheCreateUserBody() throws Exception {
+		UserDto user = new UserDto("alice", "Alice", "Smith", "alice@example.com", "98765", "Pune");
+		user.setPassword("secret");
+
+		JsonNode body = mapper.readTree(KeycloakCodec.writeUser(user));
+
+		assertEquals("alice", body.get("username").asText());
+		assertEquals("alice@example.com", body.get("email").asText());
+		assertTrue(body.get("enabled").asBoolean());
+		assertEquals("secret", body.at("/credentials/0/value").asText());
+		assertEquals("Pune", body.at("/attributes/city/0").asText());
+		assertEquals("98765", body.at("/attributes/phno/0").asText());
+	}
+
+	@Test
+	void readsTokens() throws Exception {
+		TokenResponse tokens = KeycloakCodec.readTokens("{\"access_token\":\"a\",\"expires_in\":300,"
+				+ "\"refresh_expires_in\":1800,\"refresh_token\":\"r\",\"not-before-policy\":0,\"scope\":\"email\"}");
+
+		assertEquals("a", tokens.getAccessToken());
+		assertEquals(300, tokens.getExpiresIn());
+		assertEquals("r", tokens.getRefreshToken());
+		assertEquals("Bearer", tokens.getTokenType());
+		assertThrows(IOException.class, () -> KeycloakCodec.readTokens("{\"error\":\"invalid_grant\"}"));
+	}
+
+	@Test
+	void readsTheJwtExpiry() throws Exception {
+		assertEquals(1700000000L, KeycloakCodec.readExpiry(
+				"{\"realm_access\":{\"roles\":[\"admin\"]},\"exp\":1700000000,\"iat\":1699999700}"));
+		assertNull(KeycloakCodec.readExpiry("{\"exp\":\"soon\",\"sub\":\"service-account\"}"));
+	}
+
+	@Test
+	void allocatesLessThanTheTreeModel() throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		String body = usersJson(1000);
+		// Warm both paths up so class loading and JIT do not count
+		for (int i = 0; i < 20; i++) {
+			KeycloakCodec.readUsers(body);
+			mapper.readTree(body);
+		}
+
+		long before = threads.getCurrentThreadAllocatedBytes();
+		KeycloakCodec.readUsers(body);
+		long codec = threads.getCurrentThreadAllocatedBytes() - before;
+		before = threads.getCurrentThreadAllocatedBytes();
+		mapper.readTree(body);
+		long tree = threads.getCurrentThreadAllocatedBytes() - before;
+
+		assertTrue(codec * 2 < tree, "codec allocated " + codec + " bytes, tree model " + tree);
+	}
+
+	private static String usersJson(int count) {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < count; i++) {
+			json.append(i == 0 ? "" : ",").append("{\"id\":\"id-").append(i).append("\",\"createdTimestamp\":")
+					.append(i).append(",\"username\":\"user").append(i)
+					.append("\",\"enabled\":true,\"emailVerified\":true,\"firstName\":\"First\",\"lastName\":\"Last\",")
+					.append("\"email\":\"user").append(i).append("@example.com\",\"attributes\":{\"city\":[\"Pune\"],")
+					.append("\"phno\":[\"98765\"]},\"disableableCredentialTypes\":[],\"requiredActions\":[],")
+					.append("\"notBefore\":0,\"access\":{\"view\":true,\"manage\":true}}");
+		}
+		return json.append(']').toString();
+	}
+}
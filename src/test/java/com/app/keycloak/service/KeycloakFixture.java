@@ -0,0 +1,120 @@
+package com.app.keycloak.service;
+
+import java.util.function.Consumer;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.app.keycloak.config.KeycloakClientConfig;
+import com.app.keycloak.stub.KeycloakStub;
+
+/**
+ * The Keycloak client beans wired by hand against an in-process
+ * {@link KeycloakStub}, with the settings the tests share: a guard that opens
+ * after five calls, a user cache with a one-hour stale copy and an admin token
+ * from the client credentials grant. {@link #guard} builds a guard on its own
+ * for tests that do not need Keycloak.
+ */
+final class KeycloakFixture implements AutoCloseable {
+
+	static final String REALM = "easybuy";
+	static final String CLIENT_ID = "easybuy-app";
+
+	final KeycloakStub stub;
+	final MetricsRegistry metrics = new MetricsRegistry();
+	final KeycloakClientConfig clientConfig = new KeycloakClientConfig();
+	final RestTemplate restTemplate;
+	final KeycloakGuard guard;
+	final AdminTokenManager tokenManager = new AdminTokenManager();
+	final UserCache userCache = new UserCache();
+	final UserIdCache userIdCache = new UserIdCache();
+
+	// Operation timeouts are given as "operation=milliseconds"
+	private KeycloakFixture(String... operationTimeouts) throws Exception {
+		stub = KeycloakStub.start(REALM, CLIENT_ID);
+		stub.addUser("alice", "alice-password", "admin");
+
+		ReflectionTestUtils.setField(clientConfig, "maxConnections", 20);
+		ReflectionTestUtils.setField(clientConfig, "maxConnectionsPerRoute", 20);
+		ReflectionTestUtils.setField(clientConfig, "connectTimeoutMs", 1000L);
+		ReflectionTestUtils.setField(clientConfig, "readTimeoutMs", 5000L);
+		ReflectionTestUtils.setField(clientConfig, "connectionRequestTimeoutMs", 1000L);
+		ReflectionTestUtils.setField(clientConfig, "keepAliveSeconds", 30L);
+		CloseableHttpClient httpClient = clientConfig.keycloakHttpClient(clientConfig.keycloakConnectionManager());
+		restTemplate = clientConfig.keycloakRestTemplate(httpClient);
+
+		guard = guard(metrics, operationTimeouts);
+
+		ReflectionTestUtils.setField(tokenManager, "baseUrl", stub.baseUrl());
+		ReflectionTestUtils.setField(tokenManager, "clientId", CLIENT_ID);
+		ReflectionTestUtils.setField(tokenManager, "clientSecret", KeycloakStub.CLIENT_SECRET);
+		ReflectionTestUtils.setField(tokenManager, "grantType", "client_credentials");
+		ReflectionTestUtils.setField(tokenManager, "realm", REALM);
+		ReflectionTestUtils.setField(tokenManager, "refreshAheadSeconds", 30L);
+		ReflectionTestUtils.setField(tokenManager, "defaultTtlSeconds", 60L);
+		ReflectionTestUtils.setField(tokenManager, "keycloakRestTemplate", restTemplate);
+		ReflectionTestUtils.setField(tokenManager, "metrics", metrics);
+		ReflectionTestUtils.setField(tokenManager, "keycloakGuard", guard);
+
+		ReflectionTestUtils.setField(userCache, "enabled", true);
+		ReflectionTestUtils.setField(userCache, "maxSize", 100L);
+		ReflectionTestUtils.setField(userCache, "ttlSeconds", 60L);
+		ReflectionTestUtils.setField(userCache, "staleTtlSeconds", 3600L);
+		userCache.init();
+
+		ReflectionTestUtils.setField(userIdCache, "maxSize", 100L);
+		ReflectionTestUtils.setField(userIdCache, "ttlMinutes", 60L);
+		userIdCache.init();
+	}
+
+	static KeycloakFixture start(String... operationTimeouts) throws Exception {
+		return new KeycloakFixture(operationTimeouts);
+	}
+
+	static KeycloakGuard guard(MetricsRegistry metrics, String... operationTimeouts) {
+		return guard(metrics, settings -> {
+		}, operationTimeouts);
+	}
+
+	/**
+	 * A started guard: at most 10 concurrent calls, 2 s timeouts, and a breaker
+	 * that opens for a minute once half of at least 5 of the last 10 calls
+	 * failed. {@code settings} may change any of that before the guard starts.
+	 */
+	static KeycloakGuard guard(MetricsRegistry metrics, Consumer<KeycloakGuard> settings,
+			String... operationTimeouts) {
+		MockEnvironment environment = new MockEnvironment();
+		for (String timeout : operationTimeouts) {
+			String[] parts = timeout.split("=", 2);
+			environment.setProperty("keycloak.resilience.timeoutMs." + parts[0], parts[1]);
+		}
+		KeycloakGuard guard = new KeycloakGuard();
+		ReflectionTestUtils.setField(guard, "enabled", true);
+		ReflectionTestUtils.setField(guard, "maxConcurrentCalls", 10);
+		ReflectionTestUtils.setField(guard, "defaultTimeoutMs", 2000L);
+		ReflectionTestUtils.setField(guard, "slidingWindowSize", 10);
+		ReflectionTestUtils.setField(guard, "minimumCalls", 5);
+		ReflectionTestUtils.setField(guard, "failureRateThreshold", 50);
+		ReflectionTestUtils.setField(guard, "openDurationMs", 60_000L);
+		ReflectionTestUtils.setField(guard, "halfOpenCalls", 1);
+		ReflectionTestUtils.setField(guard, "environment", environment);
+		ReflectionTestUtils.setField(guard, "metrics", metrics);
+		settings.accept(guard);
+		guard.init();
+		return guard;
+	}
+
+	WebClient webClient() {
+		return clientConfig.keycloakWebClient(WebClient.builder());
+	}
+
+	@Override
+	public void close() {
+		stub.close();
+		guard.shutdown();
+		tokenManager.shutdown();
+	}
+}
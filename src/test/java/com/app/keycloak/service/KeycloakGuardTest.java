@@ -0,0 +1,165 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.app.keycloak.exceptions.KeycloakException;
+import com.app.keycloak.exceptions.KeycloakUnavailableException;
+
+import reactor.core.publisher.Mono;
+
+class KeycloakGuardTest {
+
+	private KeycloakGuard guard;
+	private MetricsRegistry metrics;
+	private final CountDownLatch stall = new CountDownLatch(1);
+	private final ExecutorService callers = Executors.newCachedThreadPool();
+
+	@BeforeEach
+	void setUp() {
+		metrics = new MetricsRegistry();
+		// Small enough to fill the bulkhead and the breaker window by hand
+		guard = KeycloakFixture.guard(metrics, settings -> {
+			ReflectionTestUtils.setField(settings, "maxConcurrentCalls", 2);
+			ReflectionTestUtils.setField(settings, "defaultTimeoutMs", 1000L);
+			ReflectionTestUtils.setField(settings, "slidingWindowSize", 4);
+			ReflectionTestUtils.setField(settings, "minimumCalls", 4);
+			ReflectionTestUtils.setField(settings, "halfOpenCalls", 2);
+		}, "getUserInfo=50");
+	}
+
+	@AfterEach
+	void tearDown() {
+		stall.countDown();
+		callers.shutdownNow();
+		guard.shutdown();
+	}
+
+	private String stalled() {
+		try {
+			stall.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return "late";
+	}
+
+	@Test
+	void outagesOpenTheBreakerButClientErrorsDoNot() {
+		for (int i = 0; i < 4; i++) {
+			assertThrows(HttpClientErrorException.class, () -> guard.call("login", () -> {
+				throw new HttpClientErrorException(HttpStatus.UNAUTHORIZED);
+			}));
+		}
+		assertEquals(KeycloakGuard.State.CLOSED, guard.state());
+
+		guard.call("getUsers", () -> "ok");
+		guard.call("getUsers", () -> "ok");
+		for (int i = 0; i < 2; i++) {
+			assertThrows(HttpServerErrorException.class, () -> guard.call("getUsers", () -> {
+				throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+			}));
+		}
+		assertEquals(KeycloakGuard.State.OPEN, guard.state());
+
+		AtomicInteger calls = new AtomicInteger();
+		assertThrows(KeycloakUnavailableException.class, () -> guard.call("getUsers", calls::incrementAndGet));
+		assertEquals(0, calls.get());
+		assertTrue(metrics.scrape().contains(
+				"keycloak_resilience_rejections_total{operation=\"getUsers\",reason=\"circuit_open\"} 1\n"));
+	}
+
+	@Test
+	void halfOpenBreakerClosesAfterSuccessfulTrials() throws Exception {
+		ReflectionTestUtils.setField(guard, "openDurationMs", 20L);
+		for (int i = 0; i < 4; i++) {
+			assertThrows(HttpServerErrorException.class, () -> guard.call("getUsers", () -> {
+				throw new HttpServerErrorException(HttpStatus.BAD_GATEWAY);
+			}));
+		}
+		assertEquals(KeycloakGuard.State.OPEN, guard.state());
+
+		Thread.sleep(40);
+		assertEquals(KeycloakGuard.State.HALF_OPEN, guard.state());
+		guard.call("getUsers", () -> "ok");
+		assertEquals(KeycloakGuard.State.HALF_OPEN, guard.state());
+		guard.call("getUsers", () -> "ok");
+		assertEquals(KeycloakGuard.State.CLOSED, guard.state());
+	}
+
+	@Test
+	void bulkheadRejectsCallsBeyondTheLimit() throws Exception {
+		CountDownLatch running = new CountDownLatch(2);
+		Future<?> first = callers.submit(() -> guard.call("getUsers", () -> {
+			running.countDown();
+			return stalled();
+		}));
+		Future<?> second = callers.submit(() -> guard.call("getUsers", () -> {
+			running.countDown();
+			return stalled();
+		}));
+		assertTrue(running.await(1, TimeUnit.SECONDS));
+
+		assertThrows(KeycloakUnavailableException.class, () -> guard.call("addUser", () -> "ok"));
+
+		stall.countDown();
+		assertEquals("late", first.get(1, TimeUnit.SECONDS));
+		assertEquals("late", second.get(1, TimeUnit.SECONDS));
+		assertEquals("ok", guard.call("addUser", () -> "ok"));
+	}
+
+	@Test
+	void stalledKeycloakFailsFastOnceTheBreakerOpens() {
+		// Each call gives up after the operation's timeout instead of waiting for Keycloak
+		for (int i = 0; i < 4; i++) {
+			long start = System.nanoTime();
+			KeycloakException e = assertThrows(KeycloakUnavailableException.class,
+					() -> guard.call("getUserInfo", this::stalled));
+			assertTrue(KeycloakGuard.isOutage(e));
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+		}
+		assertEquals(KeycloakGuard.State.OPEN, guard.state());
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 1000; i++) {
+			assertThrows(KeycloakUnavailableException.class, () -> guard.call("getUserInfo", this::stalled));
+		}
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+	}
+
+	@Test
+	void reactiveCallsTimeOutAndFreeTheirPermit() {
+		Mono<String> call = guard.call("getUserInfo", Mono.never());
+
+		KeycloakException e = assertThrows(KeycloakUnavailableException.class, call::block);
+		assertTrue(e.getMessage().contains("50 ms"));
+		assertEquals("ok", guard.call("getUserInfo", Mono.just("ok")).block());
+		assertTrue(metrics.scrape().contains("resilience4j_bulkhead_available_concurrent_calls{name=\"keycloak\"} 2\n"));
+	}
+
+	@Test
+	void onlyOutagesCount() {
+		assertTrue(KeycloakGuard.isOutage(new KeycloakException("Error fetching user info",
+				new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR))));
+		assertFalse(KeycloakGuard.isOutage(new KeycloakException("Error fetching user info",
+				new HttpClientErrorException(HttpStatus.NOT_FOUND))));
+		assertFalse(KeycloakGuard.isOutage(new KeycloakException("Unreadable response from Keycloak")));
+	}
+}
@@ -0,0 +1,61 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class MetricsRegistryTest {
+
+	private final MetricsRegistry metrics = new MetricsRegistry();
+
+	@Test
+	void timersAreCumulativeHistograms() {
+		metrics.record("keycloak_requests", TimeUnit.MILLISECONDS.toNanos(3), "operation", "getUsers", "status", "200");
+		metrics.record("keycloak_requests", TimeUnit.MILLISECONDS.toNanos(40), "operation", "getUsers", "status", "200");
+		metrics.record("keycloak_requests", TimeUnit.SECONDS.toNanos(30), "operation", "getUsers", "status", "200");
+
+		String scrape = metrics.scrape();
+
+		String labels = "operation=\"getUsers\",status=\"200\"";
+		assertTrue(scrape.contains("# TYPE keycloak_requests_seconds histogram\n"));
+		assertTrue(scrape.contains("keycloak_requests_seconds_bucket{" + labels + ",le=\"0.005\"} 1\n"));
+		assertTrue(scrape.contains("keycloak_requests_seconds_bucket{" + labels + ",le=\"0.05\"} 2\n"));
+		assertTrue(scrape.contains("keycloak_requests_seconds_bucket{" + labels + ",le=\"10.0\"} 2\n"));
+		assertTrue(scrape.contains("keycloak_requests_seconds_bucket{" + labels + ",le=\"+Inf\"} 3\n"));
+		assertTrue(scrape.contains("keycloak_requests_seconds_count{" + labels + "} 3\n"));
+		assertTrue(scrape.contains("keycloak_requests_seconds_sum{" + labels + "} 30.043\n"));
+		assertTrue(scrape.contains("keycloak_requests_seconds_max{" + labels + "} 30\n"));
+		// The max covers the time since the previous scrape
+		assertTrue(metrics.scrape().contains("keycloak_requests_seconds_max{" + labels + "} 0\n"));
+	}
+
+	@Test
+	void countersAndGauges() {
+		metrics.increment("keycloak_admin_token_refreshes", "mode", "blocking", "result", "success");
+		metrics.increment("keycloak_admin_token_refreshes", "mode", "blocking", "result", "success");
+		metrics.gauge("hikaricp_connections_active", () -> 4, "pool", "main");
+		metrics.gauge("hikaricp_connections_idle", () -> {
+			throw new IllegalStateException("Pool not started");
+		}, "pool", "main");
+		metrics.functionCounter("cache_gets", () -> 7L, "cache", "products", "result", "hit");
+
+		String scrape = metrics.scrape();
+
+		assertTrue(scrape.contains("# TYPE keycloak_admin_token_refreshes_total counter\n"
+				+ "keycloak_admin_token_refreshes_total{mode=\"blocking\",result=\"success\"} 2\n"));
+		assertTrue(scrape.contains("hikaricp_connections_active{pool=\"main\"} 4\n"));
+		assertFalse(scrape.contains("hikaricp_connections_idle{"));
+		assertTrue(scrape.contains("# TYPE cache_gets_total counter\ncache_gets_total{cache=\"products\",result=\"hit\"} 7\n"));
+	}
+
+	@Test
+	void escapesLabelValues() {
+		assertEquals("q=\"a\\\"b\\\\c\\nd\"", MetricsRegistry.labels("q", "a\"b\\c\nd"));
+		assertThrows(IllegalArgumentException.class, () -> MetricsRegistry.labels("odd"));
+	}
+}
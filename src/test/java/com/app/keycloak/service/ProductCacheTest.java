@@ -0,0 +1,91 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.repository.ProductRepository;
+
+class ProductCacheTest {
+
+	private ProductCache productCache;
+	private AtomicInteger loads;
+
+	@BeforeEach
+	void setUp() {
+		ProductRepository repository = mock(ProductRepository.class);
+		when(repository.findPageAfter(anyLong(), any(Limit.class)))
+				.thenReturn(List.of(ProductSearchIndexTest.product(1, "Warm", "warm")));
+
+		productCache = new ProductCache();
+		ReflectionTestUtils.setField(productCache, "enabled", true);
+		ReflectionTestUtils.setField(productCache, "maxSize", 100L);
+		ReflectionTestUtils.setField(productCache, "ttlMinutes", 10L);
+		ReflectionTestUtils.setField(productCache, "warmupSize", 10);
+		ReflectionTestUtils.setField(productCache, "productRepository", repository);
+		productCache.init();
+		loads = new AtomicInteger();
+	}
+
+	private Product load(Long id) {
+		loads.incrementAndGet();
+		return id > 100 ? null : ProductSearchIndexTest.product(id, "Product " + id, "keyword");
+	}
+
+	@Test
+	void warmedAndRepeatedLookupsHitTheCache() {
+		assertEquals("Warm", productCache.get(1L, this::load).getProductname());
+		productCache.get(2L, this::load);
+		productCache.get(2L, this::load);
+
+		assertEquals(1, loads.get());
+		assertEquals(2L, productCache.stats().get("hitCount"));
+	}
+
+	@Test
+	void writesRefreshOrDropEntries() {
+		productCache.get(2L, this::load);
+		productCache.invalidate(2L);
+		productCache.get(2L, this::load);
+		productCache.put(ProductSearchIndexTest.product(1, "Updated", "warm"));
+
+		assertEquals(2, loads.get());
+		assertEquals("Updated", productCache.get(1L, this::load).getProductname());
+	}
+
+	@Test
+	void missingProductsAreNotCached() {
+		assertNull(productCache.get(500L, this::load));
+		assertNull(productCache.get(500L, this::load));
+
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void callersCannotChangeCachedProducts() {
+		Product added = ProductSearchIndexTest.product(5, "Lamp", "lamp");
+		productCache.put(added);
+		added.setPrice(1);
+		productCache.get(5L, this::load).setQuantity(0);
+		productCache.getAll(List.of(5L), ids -> Map.of()).get(5L).setProductname("Broken");
+
+		Product cached = productCache.get(5L, this::load);
+		assertEquals(100, cached.getPrice());
+		assertEquals(10, cached.getQuantity());
+		assertEquals("Lamp", cached.getProductname());
+		assertEquals(0, loads.get());
+	}
+}
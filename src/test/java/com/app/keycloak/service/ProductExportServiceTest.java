@@ -0,0 +1,72 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.app.keycloak.repository.ProductRepository;
+
+import jakarta.persistence.EntityManager;
+
+class ProductExportServiceTest {
+
+	private ProductExportService exportService;
+	private EntityManager entityManager;
+
+	@BeforeEach
+	void setUp() {
+		ProductRepository repository = mock(ProductRepository.class);
+		when(repository.streamAll()).thenAnswer(invocation -> Stream.of(
+				ProductSearchIndexTest.product(1, "Desk Lamp", "lamp"),
+				ProductSearchIndexTest.product(2, "Chair \"Pro\"", "chair, office")));
+		entityManager = mock(EntityManager.class);
+
+		exportService = new ProductExportService();
+		ReflectionTestUtils.setField(exportService, "productRepository", repository);
+		ReflectionTestUtils.setField(exportService, "entityManager", entityManager);
+	}
+
+	@Test
+	void csvExportReadsBackAndDetachesEveryRow() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		assertEquals(2, exportService.export(out, true, false));
+
+		CsvRecordReader reader = new CsvRecordReader(new InputStreamReader(
+				new ByteArrayInputStream(out.toByteArray()), StandardCharsets.UTF_8));
+		assertEquals(List.of("productid", "productname", "price", "quantity", "category", "searchkeyword"),
+				reader.next());
+		assertEquals(List.of("1", "Desk Lamp", "100", "10", "general", "lamp"), reader.next());
+		assertEquals(List.of("2", "Chair \"Pro\"", "100", "10", "general", "chair, office"), reader.next());
+		verify(entityManager, times(2)).detach(any());
+	}
+
+	@Test
+	void gzippedNdjsonExport() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		exportService.export(out, false, true);
+
+		String text = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(),
+				StandardCharsets.UTF_8);
+		List<String> lines = text.lines().toList();
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(1).contains("\"searchkeyword\":\"chair, office\""));
+	}
+}
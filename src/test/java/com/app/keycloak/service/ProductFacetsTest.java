@@ -0,0 +1,89 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.app.keycloak.entity.CategoryFacet;
+import com.app.keycloak.entity.Product;
+
+class ProductFacetsTest {
+
+	private ProductFacets facets;
+
+	@BeforeEach
+	void setUp() {
+		facets = new ProductFacets();
+		facets.rebuild(Stream.of(product(1, "books", 100), product(2, "books", 300), product(3, "toys", 50)));
+	}
+
+	@Test
+	void aggregatesPerCategory() {
+		List<CategoryFacet> result = facets.facets();
+
+		assertEquals(2, result.size());
+		CategoryFacet books = result.get(0);
+		assertEquals("books", books.getCategory());
+		assertEquals(2, books.getCount());
+		assertEquals(100, books.getMinPrice());
+		assertEquals(300, books.getMaxPrice());
+		assertEquals(200.0, books.getAvgPrice());
+		assertEquals("toys", result.get(1).getCategory());
+	}
+
+	@Test
+	void removingTheExtremesKeepsMinAndMaxRight() {
+		facets.put(product(4, "books", 200));
+		facets.remove(1);
+		facets.remove(2);
+
+		CategoryFacet books = facets.facets().get(0);
+		assertEquals(1, books.getCount());
+		assertEquals(200, books.getMinPrice());
+		assertEquals(200, books.getMaxPrice());
+	}
+
+	@Test
+	void updatesMoveProductsBetweenCategories() {
+		facets.update(3, "books", null);
+		facets.put(product(2, "games", 80));
+
+		List<CategoryFacet> result = facets.facets();
+		assertEquals(2, result.size());
+		assertEquals(2, result.get(0).getCount());
+		assertEquals(50, result.get(0).getMinPrice());
+		assertEquals(100, result.get(0).getMaxPrice());
+		assertEquals("games", result.get(1).getCategory());
+
+		facets.update(99, "toys", 10);
+		facets.remove(99);
+		assertTrue(facets.facets().stream().noneMatch(facet -> facet.getCategory().equals("toys")));
+	}
+
+	@Test
+	void categorizingAProductCountsIt() {
+		facets.put(product(5, null, 40));
+		assertEquals(2, facets.facets().size());
+
+		facets.update(5, "games", null);
+		facets.update(6, "games", 90);
+
+		CategoryFacet games = facets.facets().get(1);
+		assertEquals("games", games.getCategory());
+		assertEquals(2, games.getCount());
+		assertEquals(40, games.getMinPrice());
+		assertEquals(90, games.getMaxPrice());
+	}
+
+	private static Product product(long id, String category, int price) {
+		Product product = ProductSearchIndexTest.product(id, "Product " + id, "keyword");
+		product.setCategory(category);
+		product.setPrice(price);
+		return product;
+	}
+}
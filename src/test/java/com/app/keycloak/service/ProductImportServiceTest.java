@@ -0,0 +1,115 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.entity.ProductImportError;
+import com.app.keycloak.entity.ProductImportReport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+
+class ProductImportServiceTest {
+
+	private ProductImportService importService;
+	private ProductSearchIndex searchIndex;
+	private List<String> persisted;
+
+	@BeforeEach
+	void setUp() {
+		persisted = new ArrayList<>();
+		AtomicLong ids = new AtomicLong();
+		EntityManager entityManager = mock(EntityManager.class);
+		// Stands in for a unique constraint violation on one row
+		doAnswer(invocation -> {
+			Product product = invocation.getArgument(0);
+			if (product.getProductname().equals("Duplicate")) {
+				throw new PersistenceException("Duplicate entry");
+			}
+			product.setProductid(ids.incrementAndGet());
+			persisted.add(product.getProductname());
+			return null;
+		}).when(entityManager).persist(any());
+
+		searchIndex = new ProductSearchIndex();
+		ReflectionTestUtils.setField(searchIndex, "enabled", true);
+
+		importService = new ProductImportService();
+		ReflectionTestUtils.setField(importService, "batchSize", 2);
+		ReflectionTestUtils.setField(importService, "maxReportedErrors", 10);
+		ReflectionTestUtils.setField(importService, "productService", new ProductService());
+		ReflectionTestUtils.setField(importService, "searchIndex", searchIndex);
+		ReflectionTestUtils.setField(importService, "productFacets", new ProductFacets());
+		ReflectionTestUtils.setField(importService, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(importService, "transactionManager", mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(importService, "entityManager", entityManager);
+		importService.init();
+	}
+
+	private static InputStream body(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<Long> errorRows(ProductImportReport report) {
+		return report.getErrors().stream().map(ProductImportError::getRow).toList();
+	}
+
+	@Test
+	void importsCsvAndReportsBadRows() throws Exception {
+		String csv = "searchkeyword,productname,price,quantity,category\r\n"
+				+ "lamp,Desk Lamp,250,5,home\r\n"
+				+ "\"chair, office\",\"Chair \"\"Pro\"\"\",900,2,furniture\r\n"
+				+ "mug,Mug,abc,1,kitchen\r\n"
+				+ "\n"
+				+ "pen,Pen,10,0,office\r\n"
+				+ "rug,Rug,300,1\r\n";
+
+		ProductImportReport report = importService.importProducts(body(csv), true);
+
+		assertEquals(5, report.getTotal());
+		assertEquals(2, report.getImported());
+		assertEquals(List.of(3L, 4L, 5L), errorRows(report));
+		assertEquals(List.of("Desk Lamp", "Chair \"Pro\""), persisted);
+		assertEquals("chair, office", searchIndex.search("office").get(0).getSearchkeyword());
+	}
+
+	@Test
+	void failedBatchIsRetriedRowByRow() throws Exception {
+		String ndjson = "{\"productname\":\"Lamp\",\"price\":250,\"quantity\":5,\"category\":\"home\",\"searchkeyword\":\"lamp\"}\n"
+				+ "{\"productname\":\"Duplicate\",\"price\":10,\"quantity\":1,\"category\":\"home\",\"searchkeyword\":\"dup\"}\n"
+				+ "not json\n"
+				+ "{\"productname\":\"Rug\",\"price\":300,\"quantity\":1,\"category\":\"home\",\"searchkeyword\":\"rug\"}\n";
+
+		ProductImportReport report = importService.importProducts(body(ndjson), false);
+
+		assertEquals(4, report.getTotal());
+		assertEquals(2, report.getImported());
+		assertEquals(List.of(2L, 3L), errorRows(report));
+		assertTrue(persisted.containsAll(List.of("Lamp", "Rug")));
+		assertEquals(2, searchIndex.size());
+	}
+
+	@Test
+	void rejectsCsvWithoutRequiredColumns() {
+		assertThrows(IOException.class, () -> importService.importProducts(body("productname,price\nLamp,1\n"), true));
+	}
+}
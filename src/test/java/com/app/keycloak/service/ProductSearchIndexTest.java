@@ -0,0 +1,96 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.app.keycloak.entity.Product;
+
+class ProductSearchIndexTest {
+
+	private ProductSearchIndex index;
+
+	@BeforeEach
+	void setUp() {
+		index = new ProductSearchIndex();
+		index.rebuild(List.of(
+				product(1, "Running Shoes", "shoes sports footwear"),
+				product(2, "Leather Wallet", "wallet accessories"),
+				product(3, "Sports Watch", "watch sports running"),
+				product(4, "Shoe Rack", "furniture storage")));
+	}
+
+	static Product product(long id, String name, String keywords) {
+		Product product = new Product();
+		product.setProductid(id);
+		product.setProductname(name);
+		product.setSearchkeyword(keywords);
+		product.setCategory("general");
+		product.setPrice(100);
+		product.setQuantity(10);
+		return product;
+	}
+
+	private static List<Long> ids(List<Product> products) {
+		return products.stream().map(Product::getProductid).toList();
+	}
+
+	@Test
+	void matchesSubstringsAndRanksWholeTokensFirst() {
+		// "shoe" is a whole token in product 4's name but only a prefix of "shoes" in product 1
+		assertEquals(List.of(4L, 1L), ids(index.search("shoe")));
+		assertEquals(List.of(2L), ids(index.search("alle")));
+		assertEquals(List.of(3L, 1L), ids(index.search("port")));
+	}
+
+	@Test
+	void requiresEveryTermOfAMultiTermQuery() {
+		assertEquals(List.of(1L, 3L), ids(index.search("sports running")));
+		assertEquals(List.of(3L), ids(index.search("Running watch")));
+		assertTrue(index.search("wallet shoes").isEmpty());
+	}
+
+	@Test
+	void followsAddsUpdatesAndDeletes() {
+		index.put(product(5, "Canvas Shoes", "sneakers"));
+		index.put(product(2, "Leather Belt", "belt accessories"));
+		index.remove(4);
+
+		assertEquals(List.of(1L, 5L), ids(index.search("shoe")));
+		assertTrue(index.search("wallet").isEmpty());
+		assertEquals(List.of(2L), ids(index.search("belt")));
+		assertEquals(4, index.size());
+	}
+
+	@Test
+	void compactsAfterManyUpdates() {
+		for (int i = 0; i < 5000; i++) {
+			index.put(product(1, "Running Shoes " + i, "shoes"));
+		}
+
+		assertEquals(4, index.size());
+		assertEquals(List.of(1L), ids(index.search("shoes 4999")));
+	}
+
+	@Test
+	void changingAResultDoesNotChangeTheIndex() {
+		Product found = index.search("wallet").get(0);
+		found.setProductname("Shoe Horn");
+		found.setPrice(1);
+		index.search(" ").forEach(product -> product.setSearchkeyword("shoes"));
+
+		assertEquals(List.of(2L), ids(index.search("wallet")));
+		assertEquals("Leather Wallet", index.search("wallet").get(0).getProductname());
+		assertEquals(100, index.get(2).getPrice());
+		assertEquals(List.of(4L, 1L), ids(index.search("shoe")));
+	}
+
+	@Test
+	void blankQueryReturnsEverything() {
+		assertEquals(List.of(1L, 2L, 3L, 4L), ids(index.search(" ")));
+	}
+}
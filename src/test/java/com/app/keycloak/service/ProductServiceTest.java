@@ -0,0 +1,291 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.app.keycloak.entity.Product;
+import com.app.keycloak.entity.ProductFilter;
+import com.app.keycloak.entity.ProductLookup;
+import com.app.keycloak.entity.ProductPage;
+import com.app.keycloak.entity.ProductPatch;
+import com.app.keycloak.exceptions.CustomException;
+import com.app.keycloak.exceptions.ProductNotFoundException;
+import com.app.keycloak.exceptions.VersionConflictException;
+import com.app.keycloak.repository.ProductRepository;
+import com.app.keycloak.repository.ProductSpecifications;
+
+class ProductServiceTest {
+
+	private ProductRepository repository;
+	private ProductService service;
+	private ProductSearchIndex searchIndex;
+	private ProductFacets productFacets;
+
+	@BeforeEach
+	void setUp() {
+		repository = mock(ProductRepository.class);
+		service = new ProductService();
+		ReflectionTestUtils.setField(service, "productRepository", repository);
+		ReflectionTestUtils.setField(service, "defaultPageSize", 2);
+		ReflectionTestUtils.setField(service, "maxPageSize", 10);
+		ReflectionTestUtils.setField(service, "batchChunkSize", 500);
+		ReflectionTestUtils.setField(service, "maxBatchIds", 1000);
+
+		ProductCache productCache = new ProductCache();
+		ReflectionTestUtils.setField(productCache, "enabled", false);
+		productCache.init();
+		ReflectionTestUtils.setField(service, "productCache", productCache);
+
+		searchIndex = new ProductSearchIndex();
+		ReflectionTestUtils.setField(searchIndex, "enabled", true);
+		ReflectionTestUtils.setField(service, "searchIndex", searchIndex);
+
+		productFacets = new ProductFacets();
+		ReflectionTestUtils.setField(productFacets, "enabled", true);
+		ReflectionTestUtils.setField(service, "productFacets", productFacets);
+	}
+
+	// Mimics the keyset query over products 1..total
+	private void catalog(int total) {
+		when(repository.findPageAfter(anyLong(), any(Limit.class)))
+				.thenAnswer(invocation -> {
+					long afterId = invocation.getArgument(0);
+					int limit = invocation.<Limit>getArgument(1).max();
+					List<Product> page = new ArrayList<>();
+					for (long id = afterId + 1; id <= total && page.size() < limit; id++) {
+						page.add(ProductSearchIndexTest.product(id, "Product " + id, "keyword"));
+					}
+					return page;
+				});
+	}
+
+	@Test
+	void pagesFollowTheCursorToTheEnd() throws Exception {
+		catalog(5);
+
+		List<Long> seen = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			ProductPage page = service.getProducts(cursor, null, null, null, null);
+			page.getItems().forEach(product -> seen.add(product.getProductid()));
+			cursor = page.getNextCursor();
+			pages++;
+		} while (cursor != null);
+
+		assertEquals(List.of(1L, 2L, 3L, 4L, 5L), seen);
+		assertEquals(3, pages);
+	}
+
+	@Test
+	void lastFullPageHasNoCursor() throws Exception {
+		catalog(4);
+
+		ProductPage page = service.getProducts(null, 4, null, null, null);
+
+		assertEquals(4, page.getSize());
+		assertNull(page.getNextCursor());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void filteredPagesQueryOnlyTheCriteriaThatAreSet() throws Exception {
+		FetchableFluentQuery<Product> query = mock(FetchableFluentQuery.class, RETURNS_SELF);
+		when(query.all()).thenReturn(List.of(ProductSearchIndexTest.product(9, "Novel", "book")));
+		when(repository.findBy(any(Specification.class), any(Function.class)))
+				.thenAnswer(invocation -> invocation.<Function<FetchableFluentQuery<Product>, List<Product>>>getArgument(1)
+						.apply(query));
+
+		ProductPage page = service.getProducts(ProductService.encodeCursor(7), 5, "books", 100, null);
+
+		assertEquals(9L, page.getItems().get(0).getProductid());
+		verify(query).sortBy(ProductSpecifications.order(ProductFilter.Sort.ID));
+		verify(query).limit(6);
+		verify(repository, never()).findPageAfter(anyLong(), any(Limit.class));
+	}
+
+	@Test
+	void rejectsBadInput() {
+		assertThrows(CustomException.class, () -> service.getProducts("not-a-cursor", null, null, null, null));
+		assertThrows(CustomException.class, () -> service.getProducts(null, 11, null, null, null));
+		assertThrows(CustomException.class, () -> service.getProducts(null, null, null, 50, 10));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void batchLookupUsesChunkedQueriesAndKeepsRequestOrder() throws Exception {
+		// Every ID exists except multiples of 100
+		when(repository.findAllById(any(Iterable.class))).thenAnswer(invocation -> {
+			List<Product> found = new ArrayList<>();
+			for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+				if (id % 100 != 0) {
+					found.add(0, ProductSearchIndexTest.product(id, "Product " + id, "keyword"));
+				}
+			}
+			return found;
+		});
+		List<Long> ids = new ArrayList<>();
+		for (long id = 700; id >= 1; id--) {
+			ids.add(id);
+		}
+
+		ProductLookup lookup = service.getProductsByIds(ids);
+
+		verify(repository, times(2)).findAllById(any(Iterable.class));
+		assertEquals(693, lookup.getProducts().size());
+		assertEquals(699L, lookup.getProducts().get(0).getProductid());
+		assertEquals(1L, lookup.getProducts().get(692).getProductid());
+		assertEquals(List.of(700L, 600L, 500L, 400L, 300L, 200L, 100L), lookup.getMissingIds());
+	}
+
+	@Test
+	void batchLookupRejectsTooManyIds() {
+		List<Long> ids = new ArrayList<>();
+		for (long id = 1; id <= 1001; id++) {
+			ids.add(id);
+		}
+
+		assertThrows(CustomException.class, () -> service.getProductsByIds(ids));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void filterPagesCarryTheLastPrice() throws Exception {
+		List<Product> rows = new ArrayList<>();
+		for (long id = 1; id <= 3; id++) {
+			Product product = ProductSearchIndexTest.product(id, "Product " + id, "keyword");
+			product.setPrice((int) (500 - id * 100));
+			rows.add(product);
+		}
+		FetchableFluentQuery<Product> query = mock(FetchableFluentQuery.class, RETURNS_SELF);
+		when(query.all()).thenReturn(rows);
+		when(repository.findBy(any(Specification.class), any(Function.class)))
+				.thenAnswer(invocation -> invocation.<Function<FetchableFluentQuery<Product>, List<Product>>>getArgument(1)
+						.apply(query));
+		ProductFilter filter = new ProductFilter();
+		filter.setSort(ProductFilter.Sort.PRICE_DESC);
+
+		ProductPage page = service.filterProducts(filter, null, 2);
+
+		assertEquals(2, page.getSize());
+		verify(query).limit(3);
+		long[] last = ProductService.decodeFilterCursor(ProductFilter.Sort.PRICE_DESC, page.getNextCursor());
+		assertEquals(300, last[0]);
+		assertEquals(2, last[1]);
+		assertThrows(CustomException.class,
+				() -> service.filterProducts(filter, ProductService.encodeCursor(2), 2));
+	}
+
+	@Test
+	void patchIsOneConditionalUpdate() throws Exception {
+		Product indexed = ProductSearchIndexTest.product(3, "Lamp", "lamp light");
+		indexed.setVersion(4L);
+		searchIndex.rebuild(List.of(indexed));
+		productFacets.rebuild(Stream.of(indexed));
+		when(repository.updateProduct(3L, 4L, null, 250, null, null, null)).thenReturn(1);
+		ProductPatch patch = new ProductPatch();
+		patch.setVersion(4L);
+		patch.setPrice(250);
+
+		service.patchProduct(patch, 3L);
+
+		verify(repository, never()).existsById(anyLong());
+		Product updated = searchIndex.get(3);
+		assertEquals(250, updated.getPrice());
+		assertEquals("Lamp", updated.getProductname());
+		assertEquals(5L, updated.getVersion());
+		assertEquals(250, productFacets.facets().get(0).getMaxPrice());
+	}
+
+	@Test
+	void failedUpdateTellsMissingFromStale() {
+		when(repository.updateProduct(anyLong(), any(), any(), any(), any(), any(), any())).thenReturn(0);
+		when(repository.existsById(1L)).thenReturn(true);
+		ProductPatch patch = new ProductPatch();
+		patch.setVersion(1L);
+		patch.setQuantity(5);
+
+		assertThrows(VersionConflictException.class, () -> service.patchProduct(patch, 1L));
+		assertThrows(ProductNotFoundException.class, () -> service.patchProduct(patch, 2L));
+	}
+
+	@Test
+	void patchRejectsInvalidValues() {
+		ProductPatch patch = new ProductPatch();
+		patch.setPrice(0);
+
+		assertThrows(CustomException.class, () -> service.patchProduct(patch, 1L));
+		verify(repository, never()).updateProduct(anyLong(), any(), any(), any(), any(), any(), any());
+	}
+
+	@Test
+	void emptyPatchIsRejected() {
+		ProductPatch versionOnly = new ProductPatch();
+		versionOnly.setVersion(4L);
+
+		assertThrows(CustomException.class, () -> service.patchProduct(new ProductPatch(), 1L));
+		assertThrows(CustomException.class, () -> service.patchProduct(versionOnly, 1L));
+		verify(repository, never()).updateProduct(anyLong(), any(), any(), any(), any(), any(), any());
+	}
+
+	@Test
+	void putReplacesEveryColumnAndRejectsIncompleteProducts() throws Exception {
+		Product missingName = ProductSearchIndexTest.product(0, null, "lamp light");
+		assertThrows(CustomException.class, () -> service.updateProduct(missingName, 3L));
+		Product negativeQuantity = ProductSearchIndexTest.product(0, "Lamp", "lamp light");
+		negativeQuantity.setQuantity(-1);
+		assertThrows(CustomException.class, () -> service.updateProduct(negativeQuantity, 3L));
+		verify(repository, never()).updateProduct(anyLong(), any(), any(), any(), any(), any(), any());
+
+		Product lamp = ProductSearchIndexTest.product(0, "Lamp", "lamp light");
+		when(repository.updateProduct(3L, null, "Lamp", 100, 10, "general", "lamp light")).thenReturn(1);
+		service.updateProduct(lamp, 3L);
+		verify(repository).updateProduct(3L, null, "Lamp", 100, 10, "general", "lamp light");
+	}
+
+	@Test
+	void putMaySellAProductOut() throws Exception {
+		Product soldOut = ProductSearchIndexTest.product(0, "Lamp", "lamp light");
+		soldOut.setQuantity(0);
+		when(repository.updateProduct(3L, null, "Lamp", 100, 0, "general", "lamp light")).thenReturn(1);
+
+		service.updateProduct(soldOut, 3L);
+
+		verify(repository).updateProduct(3L, null, "Lamp", 100, 0, "general", "lamp light");
+		assertThrows(CustomException.class, () -> service.addProducts(soldOut));
+	}
+
+	@Test
+	void deleteGoesByIdAndReportsMissingProducts() throws Exception {
+		Product lamp = ProductSearchIndexTest.product(3, "Lamp", "lamp light");
+		searchIndex.rebuild(List.of(lamp));
+		when(repository.deleteProductById(3L)).thenReturn(1);
+
+		service.deleteProduct(3L);
+
+		assertNull(searchIndex.get(3));
+		assertThrows(ProductNotFoundException.class, () -> service.deleteProduct(4L));
+		verify(repository, never()).delete(any(Product.class));
+	}
+}
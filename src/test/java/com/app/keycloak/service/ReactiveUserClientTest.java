@@ -0,0 +1,190 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.app.keycloak.entity.TokenResponse;
+import com.app.keycloak.entity.UserDto;
+import com.app.keycloak.exceptions.KeycloakException;
+import com.app.keycloak.stub.KeycloakStub;
+import com.github.benmanes.caffeine.cache.Cache;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+// What keycloak.client.mode=reactive adds over the blocking client: lazy calls, no waiting thread, Mono errors
+class ReactiveUserClientTest {
+
+	private KeycloakFixture keycloak;
+	private ReactiveUserClient userClient;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		keycloak = KeycloakFixture.start("getUserInfo=500");
+
+		userClient = new ReactiveUserClient();
+		ReflectionTestUtils.setField(userClient, "baseUrl", keycloak.stub.baseUrl());
+		ReflectionTestUtils.setField(userClient, "clientId", KeycloakFixture.CLIENT_ID);
+		ReflectionTestUtils.setField(userClient, "clientSecret", KeycloakStub.CLIENT_SECRET);
+		ReflectionTestUtils.setField(userClient, "realm", KeycloakFixture.REALM);
+		ReflectionTestUtils.setField(userClient, "keycloakWebClient", keycloak.webClient());
+		ReflectionTestUtils.setField(userClient, "tokenManager", keycloak.tokenManager);
+		ReflectionTestUtils.setField(userClient, "userCache", keycloak.userCache);
+		ReflectionTestUtils.setField(userClient, "userIdCache", keycloak.userIdCache);
+		ReflectionTestUtils.setField(userClient, "metrics", keycloak.metrics);
+		ReflectionTestUtils.setField(userClient, "keycloakGuard", keycloak.guard);
+	}
+
+	@AfterEach
+	void tearDown() {
+		keycloak.close();
+	}
+
+	@Test
+	void nothingIsSentUntilSubscribed() {
+		UserDto bob = new UserDto("bob", "Bob", "Builder", "bob@example.com", "5550100", "Leeds");
+		bob.setPassword("bob-password");
+
+		Flux<UserDto> users = userClient.getUsers(0, 10);
+		Mono<List<UserDto>> info = userClient.getUserInfo("alice");
+		Mono<String> added = userClient.addUser(bob);
+		Mono<Boolean> deleted = userClient.deleteUser("bob");
+		Mono<TokenResponse> login = userClient.loginValidation("bob", "bob-password");
+		assertTrue(keycloak.stub.requestCounts().isEmpty());
+
+		StepVerifier.create(added).expectNext("User created successfully").verifyComplete();
+		StepVerifier.create(users.map(UserDto::getUsername).sort()).expectNext("alice", "bob").verifyComplete();
+		StepVerifier.create(info).assertNext(found -> assertEquals("alice", found.get(0).getUsername()))
+				.verifyComplete();
+		StepVerifier.create(login).assertNext(tokens -> assertNotNull(tokens.getAccessToken())).verifyComplete();
+		StepVerifier.create(deleted).expectNext(true).verifyComplete();
+	}
+
+	@Test
+	void slowKeycloakDoesNotHoldTheSubscribingThread() throws Exception {
+		assertEquals(1, userClient.getUsers(0, 10).count().block());
+		keycloak.stub.setLatency(Duration.ofMillis(300));
+
+		long start = System.nanoTime();
+		CompletableFuture<List<UserDto>> found = userClient.getUserInfo("alice").toFuture();
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+		assertFalse(found.isDone());
+
+		assertEquals("alice", found.get(5, TimeUnit.SECONDS).get(0).getUsername());
+	}
+
+	@Test
+	void keycloakErrorsSurfaceAsKeycloakExceptions() {
+		UserDto bob = new UserDto("bob", "Bob", "Builder", "bob@example.com", "5550100", "Leeds");
+		bob.setPassword("bob-password");
+		assertEquals("User created successfully", userClient.addUser(bob).block());
+
+		// Rejected requests are the caller's fault, not an outage
+		StepVerifier.create(userClient.addUser(bob)).expectErrorSatisfies(e -> {
+			assertInstanceOf(KeycloakException.class, e);
+			assertFalse(KeycloakGuard.isOutage(e));
+		}).verify();
+		StepVerifier.create(userClient.loginValidation("bob", "wrong")).expectErrorSatisfies(e -> {
+			assertInstanceOf(KeycloakException.class, e);
+			assertFalse(KeycloakGuard.isOutage(e));
+		}).verify();
+
+		keycloak.stub.setErrorRate(1);
+		StepVerifier.create(userClient.getUsers(0, 10)).expectErrorSatisfies(e -> {
+			assertInstanceOf(KeycloakException.class, e);
+			assertTrue(e.getMessage().startsWith("Error fetching users from Keycloak"));
+			assertTrue(KeycloakGuard.isOutage(e));
+		}).verify();
+	}
+
+	@Test
+	void refreshTokenReplacesTheUserTokens() {
+		TokenResponse login = userClient.loginValidation("alice", "alice-password").block();
+
+		TokenResponse refreshed = userClient.refreshToken(login.getRefreshToken()).block();
+		assertNotNull(refreshed.getAccessToken());
+		assertNotEquals(login.getRefreshToken(), refreshed.getRefreshToken());
+
+		// A refresh token is good for one use
+		StepVerifier.create(userClient.refreshToken(login.getRefreshToken())).expectErrorSatisfies(e -> {
+			assertInstanceOf(KeycloakException.class, e);
+			assertFalse(KeycloakGuard.isOutage(e));
+		}).verify();
+	}
+
+	@Test
+	void concurrentIdenticalLookupsShareOneKeycloakCall() {
+		assertEquals(1, userClient.getUsers(0, 10).count().block());
+		keycloak.stub.setLatency(Duration.ofMillis(200));
+		long before = keycloak.stub.requestCount("listUsers");
+
+		List<List<UserDto>> found = Flux.range(0, 5)
+				.flatMap(i -> userClient.getUserInfo(i % 2 == 0 ? "alice" : "ALICE"))
+				.collectList()
+				.block(Duration.ofSeconds(5));
+
+		assertEquals(5, found.size());
+		assertEquals(before + 1, keycloak.stub.requestCount("listUsers"));
+		Map<?, ?> stats = (Map<?, ?>) userClient.getCoalescingStats().get("getUserInfo");
+		assertEquals(1L, stats.get("executed"));
+		assertEquals(4L, stats.get("coalesced"));
+	}
+
+	@Test
+	void cancelledSubscriberLeavesTheSharedCallRunning() {
+		assertEquals(1, userClient.getUsers(0, 10).count().block());
+		keycloak.stub.setLatency(Duration.ofMillis(200));
+		long before = keycloak.stub.requestCount("listUsers");
+
+		Disposable cancelled = userClient.getUsers(0, 10).subscribe();
+		Mono<Long> waiting = userClient.getUsers(0, 10).count();
+		CompletableFuture<Long> result = waiting.toFuture();
+		cancelled.dispose();
+
+		assertEquals(1, result.join());
+		assertEquals(before + 1, keycloak.stub.requestCount("listUsers"));
+	}
+
+	@Test
+	void rejectedAdminTokenIsReplaced() {
+		assertEquals(1, userClient.getUsers(0, 10).count().block());
+		keycloak.stub.revokeAdminTokens();
+
+		assertEquals(1, userClient.getUsers(0, 10).count().block());
+		assertEquals(2, keycloak.stub.requestCount("token"));
+	}
+
+	@Test
+	void stalledKeycloakFailsFastAndServesStaleLookups() {
+		assertEquals(1, userClient.getUserInfo("alice").block().size());
+		// As if the fresh entry had expired
+		((Cache<?, ?>) ReflectionTestUtils.getField(keycloak.userCache, "cache")).invalidateAll();
+		keycloak.stub.setLatency(Duration.ofSeconds(3));
+
+		long start = System.nanoTime();
+		StepVerifier.create(userClient.getUserInfo("alice"))
+				.assertNext(stale -> assertEquals("alice", stale.get(0).getUsername()))
+				.verifyComplete();
+		StepVerifier.create(userClient.getUserInfo("carol"))
+				.expectErrorSatisfies(e -> assertTrue(KeycloakGuard.isOutage(e)))
+				.verify();
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+	}
+}
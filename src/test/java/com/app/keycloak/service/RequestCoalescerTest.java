@@ -0,0 +1,71 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.app.keycloak.exceptions.KeycloakException;
+
+class RequestCoalescerTest {
+
+	@Test
+	void concurrentCallersForTheSameKeyShareOneCall() throws Exception {
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<>();
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		int callers = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				results.add(executor.submit(() -> coalescer.execute("alice", () -> {
+					calls.incrementAndGet();
+					await(release);
+					return "result";
+				})));
+			}
+			// Let every caller reach the coalescer before the in-flight call finishes
+			while (coalescer.getExecutedCount() + coalescer.getCoalescedCount() < callers) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+
+			for (Future<String> result : results) {
+				assertEquals("result", result.get(5, TimeUnit.SECONDS));
+			}
+			assertEquals(1, calls.get());
+			assertEquals(callers - 1, coalescer.getCoalescedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void failureIsDeliveredAndNextCallRunsAgain() {
+		RequestCoalescer<String, String> coalescer = new RequestCoalescer<>();
+
+		assertThrows(KeycloakException.class, () -> coalescer.execute("bob", () -> {
+			throw new KeycloakException("down");
+		}));
+		assertEquals("ok", coalescer.execute("bob", () -> "ok"));
+		assertEquals(2, coalescer.getExecutedCount());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
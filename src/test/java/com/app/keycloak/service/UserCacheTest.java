@@ -0,0 +1,85 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.app.keycloak.entity.UserDto;
+import com.github.benmanes.caffeine.cache.Cache;
+
+class UserCacheTest {
+
+	private UserCache userCache;
+	private AtomicInteger loads;
+
+	@BeforeEach
+	void setUp() {
+		userCache = new UserCache();
+		ReflectionTestUtils.setField(userCache, "enabled", true);
+		ReflectionTestUtils.setField(userCache, "maxSize", 100L);
+		ReflectionTestUtils.setField(userCache, "ttlSeconds", 60L);
+		ReflectionTestUtils.setField(userCache, "staleTtlSeconds", 3600L);
+		userCache.init();
+		loads = new AtomicInteger();
+	}
+
+	private List<UserDto> load(String username) {
+		loads.incrementAndGet();
+		return List.of(new UserDto(username, "First", "Last", username + "@example.com", "123", "City"));
+	}
+
+	@Test
+	void repeatedLookupsHitTheCache() {
+		userCache.get("alice", this::load);
+		userCache.get("ALICE", this::load);
+
+		assertEquals(1, loads.get());
+		assertEquals(1L, userCache.stats().get("hitCount"));
+		assertEquals(1L, userCache.stats().get("missCount"));
+	}
+
+	@Test
+	void writeInvalidatesEveryQueryMatchingTheUsername() {
+		userCache.get("bob", this::load);
+		userCache.get("bob2", this::load);
+		userCache.get("carol", this::load);
+
+		userCache.invalidate("bob2");
+		userCache.get("bob", this::load);
+		userCache.get("bob2", this::load);
+		userCache.get("carol", this::load);
+
+		assertEquals(5, loads.get());
+	}
+
+	@Test
+	void staleCopyOutlivesTheFreshEntryUntilTheUserChanges() {
+		userCache.get("dave", this::load);
+		// As if the fresh entry had expired
+		((Cache<?, ?>) ReflectionTestUtils.getField(userCache, "cache")).invalidateAll();
+
+		assertNull(userCache.getIfPresent("dave"));
+		assertEquals("dave", userCache.getStale("DAVE").get(0).getUsername());
+
+		userCache.invalidate("dave");
+		assertNull(userCache.getStale("dave"));
+	}
+
+	@Test
+	void disabledCacheAlwaysLoads() {
+		UserCache disabled = new UserCache();
+		ReflectionTestUtils.setField(disabled, "enabled", false);
+		disabled.init();
+
+		disabled.get("alice", this::load);
+		disabled.get("alice", this::load);
+
+		assertEquals(2, loads.get());
+	}
+}
@@ -0,0 +1,101 @@
+package com.app.keycloak.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.app.keycloak.entity.TokenResponse;
+import com.app.keycloak.entity.UserDto;
+import com.app.keycloak.exceptions.KeycloakException;
+import com.app.keycloak.stub.KeycloakStub;
+import com.github.benmanes.caffeine.cache.Cache;
+
+// Runs the blocking client end to end against the in-process Keycloak stub
+class UsersServiceTest {
+
+	private KeycloakFixture keycloak;
+	private KeycloakStub stub;
+	private UsersService usersService;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		keycloak = KeycloakFixture.start("getUserInfo=100");
+		stub = keycloak.stub;
+
+		usersService = new UsersService();
+		ReflectionTestUtils.setField(usersService, "baseUrl", stub.baseUrl());
+		ReflectionTestUtils.setField(usersService, "clientId", KeycloakFixture.CLIENT_ID);
+		ReflectionTestUtils.setField(usersService, "clientSecret", KeycloakStub.CLIENT_SECRET);
+		ReflectionTestUtils.setField(usersService, "realm", KeycloakFixture.REALM);
+		ReflectionTestUtils.setField(usersService, "streamPageSize", 2);
+		ReflectionTestUtils.setField(usersService, "tokenManager", keycloak.tokenManager);
+		ReflectionTestUtils.setField(usersService, "keycloakRestTemplate", keycloak.restTemplate);
+		ReflectionTestUtils.setField(usersService, "userCache", keycloak.userCache);
+		ReflectionTestUtils.setField(usersService, "userIdCache", keycloak.userIdCache);
+		ReflectionTestUtils.setField(usersService, "metrics", keycloak.metrics);
+		ReflectionTestUtils.setField(usersService, "keycloakGuard", keycloak.guard);
+	}
+
+	@AfterEach
+	void tearDown() {
+		keycloak.close();
+	}
+
+	@Test
+	void usersRoundTripThroughKeycloak() throws Exception {
+		UserDto bob = new UserDto("bob", "Bob", "Builder", "bob@example.com", "5550100", "Leeds");
+		bob.setPassword("bob-password");
+
+		assertEquals("User created successfully", usersService.addUser(bob));
+		assertThrows(KeycloakException.class, () -> usersService.addUser(bob));
+
+		List<UserDto> found = usersService.getUserInfo("BOB");
+		assertEquals(1, found.size());
+		assertEquals("Leeds", found.get(0).getCity());
+		assertEquals(2, usersService.forEachUser(user -> {
+		}));
+
+		TokenResponse tokens = usersService.loginValidation("bob", "bob-password");
+		assertNotNull(usersService.refreshToken(tokens.getRefreshToken()).getAccessToken());
+		assertThrows(KeycloakException.class, () -> usersService.loginValidation("bob", "wrong"));
+
+		assertTrue(usersService.deleteUserIfPresent("bob"));
+		assertFalse(usersService.deleteUserIfPresent("bob"));
+		assertEquals(1, stub.userCount());
+	}
+
+	@Test
+	void rejectedAdminTokenIsReplaced() {
+		assertEquals(1, usersService.getUsers(0, 10).size());
+		stub.revokeAdminTokens();
+
+		assertEquals(1, usersService.getUsers(0, 10).size());
+		assertEquals(2, stub.requestCount("token"));
+	}
+
+	@Test
+	void stalledKeycloakFailsFastAndServesStaleLookups() {
+		assertEquals(1, usersService.getUserInfo("alice").size());
+		// As if the fresh entry had expired
+		((Cache<?, ?>) ReflectionTestUtils.getField(keycloak.userCache, "cache")).invalidateAll();
+		stub.setLatency(Duration.ofSeconds(2));
+
+		long start = System.nanoTime();
+		List<UserDto> stale = usersService.getUserInfo("alice");
+		assertEquals("alice", stale.get(0).getUsername());
+		KeycloakException e = assertThrows(KeycloakException.class, () -> usersService.getUserInfo("carol"));
+		assertTrue(KeycloakGuard.isOutage(e));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+	}
+}
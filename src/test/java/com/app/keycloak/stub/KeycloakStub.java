@@ -0,0 +1,413 @@
+package com.app.keycloak.stub;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the Keycloak endpoints the application calls: the
+ * token endpoint (client credentials, password and refresh grants), the realm
+ * key set, and the admin API to list, search, create and delete users.
+ * <p>
+ * Access tokens are RS256 JWTs signed with a key published on the certs
+ * endpoint, so they pass the application's own token verification. Every
+ * request can be slowed down with {@link #setLatency(Duration)} or failed with
+ * a 503 at a given rate with {@link #setErrorRate(double)}; errors are drawn
+ * from a seeded random so runs are repeatable.
+ */
+public class KeycloakStub implements AutoCloseable {
+
+	public static final String CLIENT_SECRET = "stub-secret";
+
+	private static final String KEY_ID = "stub-key";
+	private static final long TOKEN_TTL_SECONDS = 300;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final String realm;
+	private final String clientId;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final KeyPair keyPair;
+
+	// Keycloak lists users ordered by username, which is also how usernames are matched
+	private final ConcurrentSkipListMap<String, StubUser> users = new ConcurrentSkipListMap<>();
+	private final Set<String> adminTokens = ConcurrentHashMap.newKeySet();
+	private final ConcurrentMap<String, String> refreshTokens = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LongAdder> requests = new ConcurrentHashMap<>();
+	private final Random random = new Random(42);
+
+	private volatile Duration latency = Duration.ZERO;
+	private volatile double errorRate;
+
+	private KeycloakStub(String realm, String clientId) throws IOException, GeneralSecurityException {
+		this.realm = realm;
+		this.clientId = clientId;
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		keyPair = generator.generateKeyPair();
+
+		AtomicInteger threadCount = new AtomicInteger();
+		// Unbounded, so injected latency delays requests instead of queueing them behind each other
+		executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "keycloak-stub-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 200);
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+	}
+
+	// Starts a stub on a free local port
+	public static KeycloakStub start(String realm, String clientId) throws IOException, GeneralSecurityException {
+		KeycloakStub stub = new KeycloakStub(realm, clientId);
+		stub.server.start();
+		return stub;
+	}
+
+	public String baseUrl() {
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getHostString() + ":" + address.getPort();
+	}
+
+	public String issuer() {
+		return baseUrl() + "/realms/" + realm;
+	}
+
+	// Adds a user who can log in with the given password and has the given realm roles
+	public void addUser(String username, String password, String... roles) {
+		StubUser user = new StubUser(UUID.randomUUID().toString(), username, username, "User",
+				username + "@example.com", "City", "0000000000", password, List.of(roles));
+		users.put(key(username), user);
+	}
+
+	public int userCount() {
+		return users.size();
+	}
+
+	// Applied to every request before it is answered
+	public void setLatency(Duration latency) {
+		this.latency = latency;
+	}
+
+	// Share of requests answered with 503 Service Unavailable, from 0 to 1
+	public void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+
+	// Makes every admin token issued so far invalid, as a Keycloak restart would
+	public void revokeAdminTokens() {
+		adminTokens.clear();
+	}
+
+	// Requests received per endpoint: token, certs, listUsers, createUser, deleteUser
+	public Map<String, Long> requestCounts() {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		requests.forEach((endpoint, count) -> counts.put(endpoint, count.sum()));
+		return counts;
+	}
+
+	public long requestCount(String endpoint) {
+		LongAdder count = requests.get(endpoint);
+		return count == null ? 0 : count.sum();
+	}
+
+	// Clears injected faults and request counts, keeping users
+	public void reset() {
+		latency = Duration.ZERO;
+		errorRate = 0;
+		requests.clear();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getPath();
+			String method = exchange.getRequestMethod();
+			String realmPath = "/realms/" + realm + "/protocol/openid-connect/";
+			String usersPath = "/admin/realms/" + realm + "/users";
+
+			if (!latency.isZero()) {
+				Thread.sleep(latency.toMillis());
+			}
+			if (errorRate > 0 && nextDouble() < errorRate) {
+				count("error");
+				send(exchange, 503, Map.of("error", "Service Unavailable"));
+				return;
+			}
+
+			if (path.equals(realmPath + "token") && method.equals("POST")) {
+				count("token");
+				token(exchange);
+			} else if (path.equals(realmPath + "certs") && method.equals("GET")) {
+				count("certs");
+				send(exchange, 200, jwks());
+			} else if (path.startsWith(usersPath)) {
+				if (!isAdmin(exchange)) {
+					send(exchange, 401, Map.of("error", "HTTP 401 Unauthorized"));
+				} else if (path.equals(usersPath) && method.equals("GET")) {
+					count("listUsers");
+					listUsers(exchange);
+				} else if (path.equals(usersPath) && method.equals("POST")) {
+					count("createUser");
+					createUser(exchange);
+				} else if (path.startsWith(usersPath + "/") && method.equals("DELETE")) {
+					count("deleteUser");
+					deleteUser(exchange, path.substring(usersPath.length() + 1));
+				} else {
+					send(exchange, 405, Map.of("error", "Method Not Allowed"));
+				}
+			} else {
+				send(exchange, 404, Map.of("error", "Not Found"));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void token(HttpExchange exchange) throws IOException {
+		Map<String, String> form = parseQuery(new String(readBody(exchange), StandardCharsets.UTF_8));
+		if (!clientId.equals(form.get("client_id")) || !CLIENT_SECRET.equals(form.get("client_secret"))) {
+			send(exchange, 401, Map.of("error", "unauthorized_client"));
+			return;
+		}
+		String grantType = String.valueOf(form.get("grant_type"));
+		switch (grantType) {
+		case "client_credentials" -> {
+			String token = accessToken("service-account-" + clientId, clientId, List.of("admin"));
+			adminTokens.add(token);
+			send(exchange, 200, tokens(token, null));
+		}
+		case "password" -> {
+			StubUser user = form.get("username") == null ? null : users.get(key(form.get("username")));
+			if (user == null || !user.password().equals(form.get("password"))) {
+				send(exchange, 401, Map.of("error", "invalid_grant", "error_description", "Invalid user credentials"));
+				return;
+			}
+			send(exchange, 200, userTokens(user));
+		}
+		case "refresh_token" -> {
+			String username = form.get("refresh_token") == null ? null
+					: refreshTokens.remove(form.get("refresh_token"));
+			StubUser user = username == null ? null : users.get(key(username));
+			if (user == null) {
+				send(exchange, 400, Map.of("error", "invalid_grant", "error_description", "Invalid refresh token"));
+				return;
+			}
+			send(exchange, 200, userTokens(user));
+		}
+		default -> send(exchange, 400, Map.of("error", "unsupported_grant_type"));
+		}
+	}
+
+	private void listUsers(HttpExchange exchange) throws IOException {
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		String username = query.get("username");
+		boolean exact = Boolean.parseBoolean(query.get("exact"));
+		int first = Integer.parseInt(query.getOrDefault("first", "0"));
+		int max = Integer.parseInt(query.getOrDefault("max", "100"));
+
+		List<Map<String, Object>> found = new ArrayList<>();
+		int skipped = 0;
+		for (StubUser user : users.values()) {
+			if (found.size() >= max) {
+				break;
+			}
+			if (username != null && !(exact ? key(user.username()).equals(key(username))
+					: key(user.username()).contains(key(username)))) {
+				continue;
+			}
+			if (skipped++ < first) {
+				continue;
+			}
+			found.add(user.representation());
+		}
+		send(exchange, 200, found);
+	}
+
+	private void createUser(HttpExchange exchange) throws IOException {
+		JsonNode body = mapper.readTree(readBody(exchange));
+		String username = body.path("username").asText(null);
+		if (username == null || username.isBlank()) {
+			send(exchange, 400, Map.of("errorMessage", "User name is missing"));
+			return;
+		}
+		StubUser user = new StubUser(UUID.randomUUID().toString(), username, body.path("firstName").asText(null),
+				body.path("lastName").asText(null), body.path("email").asText(null),
+				body.path("attributes").path("city").path(0).asText(null),
+				body.path("attributes").path("phno").path(0).asText(null),
+				body.path("credentials").path(0).path("value").asText(""), List.of());
+		if (users.putIfAbsent(key(username), user) != null) {
+			send(exchange, 409, Map.of("errorMessage", "User exists with same username"));
+			return;
+		}
+		exchange.getResponseHeaders().add("Location", baseUrl() + "/admin/realms/" + realm + "/users/" + user.id());
+		exchange.sendResponseHeaders(201, -1);
+	}
+
+	private void deleteUser(HttpExchange exchange, String id) throws IOException {
+		boolean removed = users.values().removeIf(user -> user.id().equals(id));
+		if (!removed) {
+			send(exchange, 404, Map.of("error", "User not found"));
+			return;
+		}
+		exchange.sendResponseHeaders(204, -1);
+	}
+
+	private boolean isAdmin(HttpExchange exchange) {
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		return authorization != null && authorization.startsWith("Bearer ")
+				&& adminTokens.contains(authorization.substring("Bearer ".length()));
+	}
+
+	private Map<String, Object> userTokens(StubUser user) {
+		String refreshToken = UUID.randomUUID().toString();
+		refreshTokens.put(refreshToken, user.username());
+		return tokens(accessToken(user.id(), user.username(), user.roles()), refreshToken);
+	}
+
+	private static Map<String, Object> tokens(String accessToken, String refreshToken) {
+		Map<String, Object> tokens = new LinkedHashMap<>();
+		tokens.put("access_token", accessToken);
+		tokens.put("expires_in", TOKEN_TTL_SECONDS);
+		if (refreshToken != null) {
+			tokens.put("refresh_token", refreshToken);
+			tokens.put("refresh_expires_in", TOKEN_TTL_SECONDS * 6);
+		}
+		tokens.put("token_type", "Bearer");
+		return tokens;
+	}
+
+	private String accessToken(String subject, String username, List<String> roles) {
+		long now = Instant.now().getEpochSecond();
+		Map<String, Object> claims = new LinkedHashMap<>();
+		claims.put("exp", now + TOKEN_TTL_SECONDS);
+		claims.put("iat", now);
+		claims.put("jti", UUID.randomUUID().toString());
+		claims.put("iss", issuer());
+		claims.put("aud", clientId);
+		claims.put("sub", subject);
+		claims.put("azp", clientId);
+		claims.put("preferred_username", username);
+		claims.put("realm_access", Map.of("roles", roles));
+		try {
+			Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+			String header = encoder
+					.encodeToString(mapper.writeValueAsBytes(Map.of("alg", "RS256", "typ", "JWT", "kid", KEY_ID)));
+			String payload = encoder.encodeToString(mapper.writeValueAsBytes(claims));
+			Signature signature = Signature.getInstance("SHA256withRSA");
+			signature.initSign(keyPair.getPrivate());
+			signature.update((header + "." + payload).getBytes(StandardCharsets.US_ASCII));
+			return header + "." + payload + "." + encoder.encodeToString(signature.sign());
+		} catch (IOException | GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to sign the stub token", e);
+		}
+	}
+
+	private Map<String, Object> jwks() {
+		RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		return Map.of("keys", List.of(Map.of("kid", KEY_ID, "kty", "RSA", "alg", "RS256", "use", "sig", "n",
+				encoder.encodeToString(publicKey.getModulus().toByteArray()), "e",
+				encoder.encodeToString(publicKey.getPublicExponent().toByteArray()))));
+	}
+
+	private void send(HttpExchange exchange, int status, Object body) throws IOException {
+		byte[] bytes = mapper.writeValueAsBytes(body);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private void count(String endpoint) {
+		requests.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+	}
+
+	private double nextDouble() {
+		synchronized (random) {
+			return random.nextDouble();
+		}
+	}
+
+	private static byte[] readBody(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			return in.readAllBytes();
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> values = new LinkedHashMap<>();
+		if (query == null || query.isEmpty()) {
+			return values;
+		}
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+			String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+			values.putIfAbsent(name, value);
+		}
+		return values;
+	}
+
+	private static String key(String username) {
+		return username.toLowerCase(Locale.ROOT);
+	}
+
+	private record StubUser(String id, String username, String firstName, String lastName, String email,
+			String city, String phno, String password, List<String> roles) {
+
+		Map<String, Object> representation() {
+			Map<String, Object> user = new LinkedHashMap<>();
+			user.put("id", id);
+			user.put("username", username);
+			user.put("enabled", true);
+			user.put("firstName", firstName);
+			user.put("lastName", lastName);
+			user.put("email", email);
+			user.put("attributes", Map.of("city", city == null ? List.of() : List.of(city), "phno",
+					phno == null ? List.of() : List.of(phno)));
+			return user;
+		}
+	}
+}